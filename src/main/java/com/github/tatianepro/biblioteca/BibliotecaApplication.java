@@ -1,18 +1,27 @@
 package com.github.tatianepro.biblioteca;
 
-import org.modelmapper.ModelMapper;
+import com.github.tatianepro.biblioteca.api.mapper.BookMapper;
+import com.github.tatianepro.biblioteca.api.mapper.LoanMapper;
+import org.mapstruct.factory.Mappers;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.autoconfigure.metrics.data.RepositoryMetricsAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// repository queries are timed by config.RepositoryMetricsPostProcessor
+@SpringBootApplication(exclude = RepositoryMetricsAutoConfiguration.class)
 @EnableScheduling
 public class BibliotecaApplication {
 
 	@Bean
-	public ModelMapper modelMapper() {
-		return new ModelMapper();
+	public BookMapper bookMapper() {
+		return Mappers.getMapper(BookMapper.class);
+	}
+
+	@Bean
+	public LoanMapper loanMapper() {
+		return Mappers.getMapper(LoanMapper.class);
 	}
 
 	public static void main(String[] args) {
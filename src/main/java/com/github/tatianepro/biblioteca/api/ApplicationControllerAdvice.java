@@ -2,8 +2,11 @@ package com.github.tatianepro.biblioteca.api;
 
 import com.github.tatianepro.biblioteca.api.exception.ApiErrors;
 import com.github.tatianepro.biblioteca.api.exception.BusinessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -11,9 +14,14 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.sql.SQLException;
+
 @RestControllerAdvice
 public class ApplicationControllerAdvice {
 
+    // SQL standard state of a unique constraint violation
+    private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiErrors handleValidationExceptions(MethodArgumentNotValidException ex) {
@@ -27,6 +35,34 @@ public class ApplicationControllerAdvice {
         return new ApiErrors( ex );
     }
 
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiErrors handleOptimisticLockingFailure(ObjectOptimisticLockingFailureException ex) {
+        return new ApiErrors( "Concurrent update, reload and try again." );
+    }
+
+    // a unique index the service checks could not rule out beforehand, e.g. an isbn saved by another instance,
+    // is a conflict; any other violation (a value too long, a missing required column) is a bad request
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity handleDataIntegrityViolation(DataIntegrityViolationException ex) {
+        if (isUniqueViolation(ex)) {
+            return new ResponseEntity(new ApiErrors( "Conflicting data, reload and try again." ), HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity(new ApiErrors( "Invalid data, check the required fields and their sizes." ), HttpStatus.BAD_REQUEST);
+    }
+
+    private boolean isUniqueViolation(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DuplicateKeyException) {
+                return true;
+            }
+            if (cause instanceof SQLException && UNIQUE_VIOLATION_SQL_STATE.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity handleResponseStatusException( ResponseStatusException ex ) {
         return new ResponseEntity(new ApiErrors(ex), ex.getStatus());
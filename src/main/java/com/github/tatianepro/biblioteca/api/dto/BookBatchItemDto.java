@@ -0,0 +1,25 @@
+package com.github.tatianepro.biblioteca.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class BookBatchItemDto {
+
+    public static final String CREATED = "CREATED";
+    public static final String INVALID = "INVALID";
+    public static final String DUPLICATED = "DUPLICATED";
+
+    private int index;      // position of the book in the request payload
+    private String isbn;
+    private String status;
+    private Long id;
+    private List<String> errors;
+}
@@ -1,5 +1,6 @@
 package com.github.tatianepro.biblioteca.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 
 import javax.validation.constraints.NotEmpty;
@@ -17,5 +18,13 @@ public class BookDto {
     private String author;
     @NotEmpty
     private String isbn;
+    // version the client read, an update of an older one is refused with 409
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
+
+    // used by the export query and the catalog formats, which carry no version
+    public BookDto(Long id, String title, String author, String isbn) {
+        this(id, title, author, isbn, null);
+    }
 
 }
@@ -0,0 +1,19 @@
+package com.github.tatianepro.biblioteca.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class CatalogImportDto {
+
+    private long read;          // records found in the file, header excluded
+    private long created;
+    private long duplicated;    // isbn already registered or repeated in the file
+    private long invalid;       // malformed records or books failing validation
+    private long elapsedMillis;
+}
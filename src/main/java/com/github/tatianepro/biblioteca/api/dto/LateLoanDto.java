@@ -0,0 +1,22 @@
+package com.github.tatianepro.biblioteca.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// read-only projection of an overdue loan, only what the late loan notice needs
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class LateLoanDto {
+    private Long id;
+    private String customer;
+    private String customerEmail;
+    private String bookTitle;
+    private LocalDate loanDate;
+    private LocalDate dueDate;
+}
@@ -0,0 +1,46 @@
+package com.github.tatianepro.biblioteca.api.dto;
+
+import com.github.tatianepro.biblioteca.api.exception.BusinessException;
+import com.github.tatianepro.biblioteca.model.entity.Loan;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Position of the last loan read in a keyset paginated listing.
+ * Sent to the client as an opaque token, e.g. base64url("18765:42").
+ */
+@Getter
+@AllArgsConstructor
+public class LoanCursor {
+
+    private final LocalDate loanDate;
+    private final Long id;
+
+    public static LoanCursor of(Loan loan) {
+        if (loan.getLoanDate() == null || loan.getId() == null) {
+            throw new IllegalArgumentException("Loan " + loan.getId() + " has no position in the keyset");
+        }
+        return new LoanCursor(loan.getLoanDate(), loan.getId());
+    }
+
+    public String encode() {
+        String raw = loanDate.toEpochDay() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static LoanCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            LocalDate loanDate = LocalDate.ofEpochDay(Long.parseLong(raw.substring(0, separator)));
+            Long id = Long.valueOf(raw.substring(separator + 1));
+            return new LoanCursor(loanDate, id);
+        } catch (RuntimeException ex) {
+            throw new BusinessException("Invalid cursor");
+        }
+    }
+}
@@ -21,4 +21,13 @@ public class LoanFilterDto {
     @NotEmpty
     private String email;
     private BookDto bookDto;
+
+    // used by the read-only projection queries of LoanRepository (select new ...)
+    public LoanFilterDto(Long id, String customer, String email,
+                         Long bookId, String bookTitle, String bookAuthor, String bookIsbn) {
+        this.id = id;
+        this.customer = customer;
+        this.email = email;
+        this.bookDto = new BookDto(bookId, bookTitle, bookAuthor, bookIsbn);
+    }
 }
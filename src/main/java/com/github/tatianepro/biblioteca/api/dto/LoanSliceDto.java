@@ -0,0 +1,19 @@
+package com.github.tatianepro.biblioteca.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class LoanSliceDto {
+    private List<LoanFilterDto> content;
+    private int size;
+    private boolean hasNext;
+    private String next;    // opaque cursor for the next slice, null on the last one
+}
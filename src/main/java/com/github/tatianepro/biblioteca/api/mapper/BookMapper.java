@@ -0,0 +1,20 @@
+package com.github.tatianepro.biblioteca.api.mapper;
+
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+// implementation generated at compile time by MapStruct (BookMapperImpl)
+@Mapper
+public interface BookMapper {
+
+    BookDto toDto(Books book);
+
+    @Mapping(target = "loans", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "storedTitle", ignore = true)
+    @Mapping(target = "storedAuthor", ignore = true)
+    Books toEntity(BookDto bookDto);
+}
@@ -0,0 +1,29 @@
+package com.github.tatianepro.biblioteca.api.mapper;
+
+import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
+import com.github.tatianepro.biblioteca.model.entity.Loan;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+/**
+ * Implementation generated at compile time by MapStruct (LoanMapperImpl).
+ * Keeps the field semantics of the former ModelMapper calls: isbn and bookDto are not
+ * filled from the loan (the controllers set bookDto), and email is not copied back into the entity.
+ */
+@Mapper(uses = BookMapper.class)
+public interface LoanMapper {
+
+    @Mapping(target = "email", source = "customerEmail")
+    @Mapping(target = "isbn", ignore = true)
+    @Mapping(target = "bookDto", ignore = true)
+    LoanFilterDto toFilterDto(Loan loan);
+
+    @Mapping(target = "book", source = "bookDto")
+    @Mapping(target = "customerEmail", ignore = true)
+    @Mapping(target = "loanDate", ignore = true)
+    @Mapping(target = "dueDate", ignore = true)
+    @Mapping(target = "returned", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "storedReturned", ignore = true)
+    Loan toEntity(LoanFilterDto loanFilterDto);
+}
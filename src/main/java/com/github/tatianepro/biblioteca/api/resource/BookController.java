@@ -1,23 +1,38 @@
 package com.github.tatianepro.biblioteca.api.resource;
 
+import com.github.tatianepro.biblioteca.api.dto.BookBatchItemDto;
 import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.api.dto.CatalogImportDto;
+import com.github.tatianepro.biblioteca.api.dto.LoanCursor;
 import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
+import com.github.tatianepro.biblioteca.api.dto.LoanSliceDto;
+import com.github.tatianepro.biblioteca.api.mapper.BookMapper;
+import com.github.tatianepro.biblioteca.api.mapper.LoanMapper;
 import com.github.tatianepro.biblioteca.model.entity.Books;
 import com.github.tatianepro.biblioteca.model.entity.Loan;
+import com.github.tatianepro.biblioteca.service.BookCatalogService;
 import com.github.tatianepro.biblioteca.service.BookService;
+import com.github.tatianepro.biblioteca.service.CatalogFormat;
 import com.github.tatianepro.biblioteca.service.LoanService;
 import io.swagger.annotations.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -31,9 +46,15 @@ import java.util.stream.Collectors;
 @Slf4j
 public class BookController {
 
+    // largest slice of the cursor listing, bigger sizes are clamped to it
+    private static final int MAX_CURSOR_SIZE = 100;
+
     private final BookService bookService;
-    private final ModelMapper modelMapper;
+    private final BookMapper bookMapper;
+    private final LoanMapper loanMapper;
     private final LoanService loanService;
+    private final Validator validator;
+    private final BookCatalogService bookCatalogService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -44,9 +65,95 @@ public class BookController {
     })
     public BookDto create(@RequestBody @Valid BookDto bookDto) {
         log.info(" -----> creating a book for isbn {}", bookDto.getIsbn());
-        Books entity = modelMapper.map( bookDto, Books.class );
+        Books entity = bookMapper.toEntity(bookDto);
         entity = bookService.save(entity);
-        return modelMapper.map( entity, BookDto.class );
+        return bookMapper.toDto(entity);
+    }
+
+    @PostMapping("batch")
+    @ApiOperation("Creates a list of books, reporting the result of each one")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Books processed, see the status of each item")
+    })
+    public List<BookBatchItemDto> createBatch(@RequestBody List<BookDto> bookDtos) {
+        log.info(" -----> creating a batch of {} books", bookDtos.size());
+        // sequential: validating in the common fork join pool would compete with every other request
+        List<List<String>> errors = bookDtos
+                .stream()
+                .map(this::validationErrors)
+                .collect(Collectors.toList());
+
+        List<Books> entities = new ArrayList<>(Collections.nCopies(bookDtos.size(), null));
+        List<Books> validBooks = new ArrayList<>();
+        for (int i = 0; i < bookDtos.size(); i++) {
+            if (errors.get(i).isEmpty()) {
+                Books entity = bookMapper.toEntity(bookDtos.get(i));
+                entity.setId(null);
+                entities.set(i, entity);
+                validBooks.add(entity);
+            }
+        }
+        bookService.saveAll(validBooks);
+
+        List<BookBatchItemDto> result = new ArrayList<>(bookDtos.size());
+        for (int i = 0; i < bookDtos.size(); i++) {
+            BookDto bookDto = bookDtos.get(i);
+            BookBatchItemDto item = BookBatchItemDto.builder().index(i).isbn(bookDto == null ? null : bookDto.getIsbn()).build();
+            Books entity = entities.get(i);
+            if (entity == null) {
+                item.setStatus(BookBatchItemDto.INVALID);
+                item.setErrors(errors.get(i));
+            } else if (entity.getId() == null) {
+                item.setStatus(BookBatchItemDto.DUPLICATED);
+                item.setErrors(Collections.singletonList("Isbn já cadastrado."));
+            } else {
+                item.setStatus(BookBatchItemDto.CREATED);
+                item.setId(entity.getId());
+            }
+            result.add(item);
+        }
+        return result;
+    }
+
+    private List<String> validationErrors(BookDto bookDto) {
+        if (bookDto == null) {
+            return Collections.singletonList("book: must not be null");
+        }
+        return validator.validate(bookDto)
+                .stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("export")
+    @ApiOperation("Streams the whole catalog as NDJSON (default) or CSV")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Catalog exported"),
+            @ApiResponse(code = 400, message = "Invalid format")
+    })
+    public void export(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException {
+        log.info(" -----> exporting the catalog as {}", format);
+        CatalogFormat catalogFormat = CatalogFormat.of(format);
+        response.setContentType(catalogFormat.getMediaType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=books." + catalogFormat.getExtension());
+        long exported = bookCatalogService.export(catalogFormat, response.getOutputStream());
+        log.info(" -----> {} books exported", exported);
+    }
+
+    @PostMapping(value = "import", consumes = {"application/x-ndjson", "text/csv", "application/octet-stream"})
+    @ApiOperation("Imports a NDJSON (default) or CSV catalog file of any size, skipping invalid and duplicated books")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Catalog imported, see the counters"),
+            @ApiResponse(code = 400, message = "Invalid format"),
+            @ApiResponse(code = 503, message = "Too many imports running")
+    })
+    public CatalogImportDto importCatalog(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                          HttpServletRequest request) throws IOException {
+        log.info(" -----> importing a {} catalog", format);
+        return bookCatalogService.importCatalog(CatalogFormat.of(format), request.getInputStream());
     }
 
     @GetMapping("{id}")
@@ -59,8 +166,7 @@ public class BookController {
     public BookDto get(@PathVariable Long id) {
         log.info(" -----> obtaining book detail for id {}", id);
         return bookService
-                .getById(id)
-                .map(book -> modelMapper.map(book, BookDto.class))
+                .getDtoById(id)
                 .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
@@ -83,17 +189,21 @@ public class BookController {
     @ApiOperation("Updates a book by ID and its properties")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Book successfully updated"),
-            @ApiResponse(code = 404, message = "Book not found")
+            @ApiResponse(code = 404, message = "Book not found"),
+            @ApiResponse(code = 409, message = "Book changed since the version sent")
     })
     public BookDto put(@PathVariable Long id, @RequestBody @Valid BookDto bookDto) {
         log.info(" -----> updating the book details for id {}", id);
         return bookService
                 .getById(id)
                 .map(book -> {
+                    if (bookDto.getVersion() != null && !bookDto.getVersion().equals(book.getVersion())) {
+                        throw new ObjectOptimisticLockingFailureException(Books.class, id);
+                    }
                     book.setTitle(bookDto.getTitle());
                     book.setAuthor(bookDto.getAuthor());
                     Books updatedBook = bookService.update(book);
-                    return modelMapper.map(updatedBook, BookDto.class);
+                    return bookMapper.toDto(updatedBook);
                 })
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
@@ -105,11 +215,11 @@ public class BookController {
     })
     public Page<BookDto> find(BookDto bookDto, Pageable pageRequest) {
         log.info(" -----> searching for books of isbn {}", bookDto.getIsbn());
-        Books filter = modelMapper.map(bookDto, Books.class);
+        Books filter = bookMapper.toEntity(bookDto);
         Page<Books> pageResult = bookService.find(filter, pageRequest);
         List<BookDto> bookListDto = pageResult.getContent()
                 .stream()
-                .map(book -> modelMapper.map(book, BookDto.class))
+                .map(bookMapper::toDto)
                 .collect(Collectors.toList());
         return new PageImpl<BookDto>(bookListDto, pageRequest, pageResult.getTotalElements());
     }
@@ -129,12 +239,47 @@ public class BookController {
                 .stream()
                 .map(loan -> {
                     Books loanBook = loan.getBook();
-                    BookDto bookDto = modelMapper.map(loanBook, BookDto.class);
-                    LoanFilterDto loanDto = modelMapper.map(loan, LoanFilterDto.class);
+                    BookDto bookDto = bookMapper.toDto(loanBook);
+                    LoanFilterDto loanDto = loanMapper.toFilterDto(loan);
                     loanDto.setBookDto(bookDto);
                     return loanDto;
                 }).collect(Collectors.toList());
         return new PageImpl<LoanFilterDto>(dtoList, pageRequest, loansByBookPageable.getTotalElements());
     }
 
+    @GetMapping("{id}/loans/cursor")
+    @ApiOperation("Finds a borrowed book list by ID using keyset pagination (newest first, no total count)")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Book was found"),
+            @ApiResponse(code = 400, message = "Invalid argument"),
+            @ApiResponse(code = 404, message = "Book not found")
+    })
+    public LoanSliceDto getLoansByBookAfter(@PathVariable("id") Long id,
+                                            @RequestParam(value = "after", required = false) String after,
+                                            @RequestParam(value = "size", defaultValue = "20") int size) {
+        log.info(" -----> searching for borrowed book for id {} after cursor {}", id, after);
+        size = Math.max(1, Math.min(size, MAX_CURSOR_SIZE));
+        LoanCursor cursor = after == null ? null : LoanCursor.decode(after);
+        Books book = bookService.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Slice<Loan> slice = cursor == null
+                ? loanService.getLoansByBookAfter(book, null, null, size)
+                : loanService.getLoansByBookAfter(book, cursor.getLoanDate(), cursor.getId(), size);
+        List<Loan> loans = slice.getContent();
+        List<LoanFilterDto> dtoList = loans
+                .stream()
+                .map(loan -> {
+                    BookDto bookDto = bookMapper.toDto(loan.getBook());
+                    LoanFilterDto loanDto = loanMapper.toFilterDto(loan);
+                    loanDto.setBookDto(bookDto);
+                    return loanDto;
+                }).collect(Collectors.toList());
+        String next = slice.hasNext() ? LoanCursor.of(loans.get(loans.size() - 1)).encode() : null;
+        return LoanSliceDto.builder()
+                .content(dtoList)
+                .size(dtoList.size())
+                .hasNext(slice.hasNext())
+                .next(next)
+                .build();
+    }
+
 }
@@ -5,6 +5,7 @@ import com.github.tatianepro.biblioteca.api.dto.LoanDto;
 import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
 import com.github.tatianepro.biblioteca.api.dto.ReturnedLoanDto;
 import com.github.tatianepro.biblioteca.api.exception.BusinessException;
+import com.github.tatianepro.biblioteca.api.mapper.LoanMapper;
 import com.github.tatianepro.biblioteca.model.entity.Books;
 import com.github.tatianepro.biblioteca.model.entity.Loan;
 import com.github.tatianepro.biblioteca.service.BookService;
@@ -12,9 +13,7 @@ import com.github.tatianepro.biblioteca.service.LoanService;
 import io.swagger.annotations.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
@@ -22,8 +21,6 @@ import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
 import java.time.LocalDate;
-import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/loans")
@@ -37,7 +34,7 @@ public class LoanController {
 
     private final BookService bookService;
     private final LoanService loanService;
-    private final ModelMapper modelMapper;
+    private final LoanMapper loanMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -49,7 +46,8 @@ public class LoanController {
     public Long create(@RequestBody @Valid LoanDto loanDto) {
         log.info(" -----> creating a loan for book isbn {}", loanDto.getIsbn());
         Books book = bookService
-                .getBookByIsbn(loanDto.getIsbn())
+                .getBookIdByIsbn(loanDto.getIsbn())
+                .map(bookService::getReference)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn"));
         Loan loan = Loan
                 .builder()
@@ -77,7 +75,7 @@ public class LoanController {
         Loan loanFound = loanService
                 .getById(id)
                 .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        returnedLoanDto.setReturned(returnedLoanDto.getReturned());
+        loanFound.setReturned(returnedLoanDto.getReturned());
         loanService.update(loanFound);
     }
 
@@ -95,22 +93,9 @@ public class LoanController {
         BookDto bookFilterDto = getBookDto(loanFilterDto);
         loanFilterDto.setBookDto(bookFilterDto);
 
-        Loan loanMapped = modelMapper.map(loanFilterDto, Loan.class);
+        Loan loanMapped = loanMapper.toEntity(loanFilterDto);
 
-        Page<Loan> loanPage = loanService.find(loanMapped, pageRequest);
-
-        List<LoanFilterDto> loans = loanPage
-                .getContent()
-                .stream()
-                .map( loan -> {
-                    Books book = loan.getBook();
-                    BookDto mappedBookDto = modelMapper.map(book, BookDto.class);
-                    LoanFilterDto mappedLoanDto = modelMapper.map(loan, LoanFilterDto.class);
-                    mappedLoanDto.setBookDto(mappedBookDto);
-                    return mappedLoanDto;
-                }).collect(Collectors.toList());
-
-        return new PageImpl<LoanFilterDto>(loans, pageRequest, loanPage.getTotalElements());
+        return loanService.findDto(loanMapped, pageRequest);
     }
 
     private BookDto getBookDto(LoanFilterDto loanFilterDto) {
@@ -0,0 +1,20 @@
+package com.github.tatianepro.biblioteca.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caffeine caches configured by the {@code spring.cache.*} properties. Both caches are declared in
+ * {@code spring.cache.cache-names}, so actuator binds their hit, miss and eviction metrics
+ * ({@code cache.gets}, {@code cache.evictions}, ...) at startup.
+ */
+@EnableCaching
+@Configuration
+public class CacheConfig {
+
+    // isbn -> book id, read by every new loan; an id, not the entity, so no request shares a managed
+    // Books (lazy loans, version) with another one
+    public static final String BOOK_IDS_BY_ISBN = "bookIdsByIsbn";
+    // isbn -> true, only registered isbns are cached so a new book is never hidden by a stale 'false'
+    public static final String ISBN_EXISTS = "isbnExists";
+}
@@ -0,0 +1,31 @@
+package com.github.tatianepro.biblioteca.config;
+
+import com.github.tatianepro.biblioteca.service.BookService;
+import com.github.tatianepro.biblioteca.service.EmailService;
+import com.github.tatianepro.biblioteca.service.LoanService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Timers of the service calls and of the repository queries, next to the one actuator already records for
+ * the controllers ({@code http.server.requests}). The percentiles of the three are published through the
+ * {@code management.metrics.distribution.*} properties, so the admin server can chart them from
+ * {@code /monitor/metrics}, as well as the open and overdue loan gauges of
+ * {@link com.github.tatianepro.biblioteca.service.loan.LoanGauges}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // static: a post processor must not wait for this configuration to be instantiated
+    @Bean
+    public static ServiceMetricsPostProcessor serviceMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ServiceMetricsPostProcessor(meterRegistry, BookService.class, LoanService.class, EmailService.class);
+    }
+
+    @Bean
+    public static RepositoryMetricsPostProcessor repositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new RepositoryMetricsPostProcessor(meterRegistry);
+    }
+}
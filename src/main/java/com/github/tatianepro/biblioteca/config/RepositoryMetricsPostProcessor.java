@@ -0,0 +1,57 @@
+package com.github.tatianepro.biblioteca.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every repository query as {@value #METRIC}, tagged with the repository, the method, the outcome
+ * (success or error) and the exception, through the invocation listener of Spring Data.
+ * <p>
+ * Takes the place of actuator's {@code RepositoryMetricsAutoConfiguration}: on Spring Boot 2.5.0 its post
+ * processor creates the meter registry before any {@code MeterBinder} bean exists, which left the jvm
+ * metrics and the gauges of the application out of {@code /monitor/metrics}. The registry is only looked
+ * up here at the first query.
+ */
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    public static final String METRIC = "biblioteca.repository.invocations";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport) {
+            RepositoryMethodInvocationListener listener = this::record;
+            ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(
+                    factory -> factory.addInvocationListener(listener));
+        }
+        return bean;
+    }
+
+    private void record(RepositoryMethodInvocationListener.RepositoryMethodInvocation invocation) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        RepositoryMethodInvocationListener.RepositoryMethodInvocationResult result = invocation.getResult();
+        Throwable error = result == null ? null : result.getError();
+        Timer.builder(METRIC)
+                .description("Queries of the Spring Data repositories")
+                .tag("repository", invocation.getRepositoryInterface().getSimpleName())
+                .tag("method", invocation.getMethod().getName())
+                .tag("outcome", error == null ? "success" : "error")
+                .tag("exception", error == null ? "none" : error.getClass().getSimpleName())
+                .register(registry)
+                .record(invocation.getDuration(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+}
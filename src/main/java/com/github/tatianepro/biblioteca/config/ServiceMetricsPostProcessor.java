@@ -0,0 +1,107 @@
+package com.github.tatianepro.biblioteca.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every call to the methods of the given service interfaces as {@value #METRIC}, tagged with the
+ * service, the method, the outcome (success or error) and the exception.
+ * <p>
+ * The advisor is added in front of the transaction and cache advisors of beans that are already proxied,
+ * so the commit and the cache hits are part of the measured call, the same way {@code @Async} and
+ * {@code @Validated} are applied. A returned {@link CompletableFuture} is timed until it completes.
+ */
+public class ServiceMetricsPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+    public static final String METRIC = "biblioteca.service.invocations";
+
+    public ServiceMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry, Class<?>... services) {
+        List<Class<?>> timedServices = Arrays.asList(services);
+        StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return timedServices.stream().anyMatch(service -> service.isAssignableFrom(targetClass)
+                        && ClassUtils.hasMethod(service, method.getName(), method.getParameterTypes()));
+            }
+        };
+        pointcut.setClassFilter(targetClass -> timedServices.stream().anyMatch(service -> service.isAssignableFrom(targetClass)));
+
+        this.advisor = new DefaultPointcutAdvisor(pointcut, new TimingInterceptor(meterRegistry, timedServices));
+        setBeforeExistingAdvisors(true);
+        setProxyTargetClass(true);
+    }
+
+    private static final class TimingInterceptor implements MethodInterceptor {
+
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private final List<Class<?>> services;
+        private final Map<Class<?>, String> serviceNames = new ConcurrentHashMap<>();
+
+        private TimingInterceptor(ObjectProvider<MeterRegistry> meterRegistry, List<Class<?>> services) {
+            this.meterRegistry = meterRegistry;
+            this.services = services;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (registry == null) {
+                return invocation.proceed();
+            }
+            Timer.Sample sample = Timer.start(registry);
+            Object result;
+            try {
+                result = invocation.proceed();
+            } catch (Throwable e) {
+                stop(registry, sample, invocation, e);
+                throw e;
+            }
+            if (result instanceof CompletableFuture) {
+                // the caller keeps the original future, the timer only listens to it
+                ((CompletableFuture<?>) result).whenComplete((value, error) -> stop(registry, sample, invocation, error));
+            } else {
+                stop(registry, sample, invocation, null);
+            }
+            return result;
+        }
+
+        private void stop(MeterRegistry registry, Timer.Sample sample, MethodInvocation invocation, Throwable error) {
+            if (error instanceof CompletionException && error.getCause() != null) {
+                error = error.getCause();
+            }
+            sample.stop(Timer.builder(METRIC)
+                    .description("Calls to the book, loan and email services")
+                    .tag("service", serviceName(invocation))
+                    .tag("method", invocation.getMethod().getName())
+                    .tag("outcome", error == null ? "success" : "error")
+                    .tag("exception", error == null ? "none" : error.getClass().getSimpleName())
+                    .register(registry));
+        }
+
+        private String serviceName(MethodInvocation invocation) {
+            Class<?> targetClass = invocation.getThis() == null
+                    ? invocation.getMethod().getDeclaringClass()
+                    : ClassUtils.getUserClass(invocation.getThis());
+            return serviceNames.computeIfAbsent(targetClass, type -> services.stream()
+                    .filter(service -> service.isAssignableFrom(type))
+                    .findFirst()
+                    .map(Class::getSimpleName)
+                    .orElse(type.getSimpleName()));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.tatianepro.biblioteca.config.sql;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fits, per endpoint, the least squares line of the statements a request runs against the rows it fetches.
+ * A slope of one statement every few rows is the mark of an N+1: every row of the page lazily loads its
+ * association with a query of its own. Paging and cached lookups run a fixed number of statements whatever
+ * the size of the result, their slope stays close to zero.
+ */
+@Component
+public class NPlusOneDetector {
+
+    private final SqlStatisticsProperties properties;
+    private final Map<String, Fit> fits = new ConcurrentHashMap<>();
+
+    public NPlusOneDetector(SqlStatisticsProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Adds a request of the endpoint to its fit.
+     *
+     * @return the statements per fetched row of the endpoint when it becomes a suspect with this request,
+     * {@code NaN} otherwise, so each suspect is reported once
+     */
+    public double record(String endpoint, int statements, long rows) {
+        Fit fit = fits.computeIfAbsent(endpoint, key -> new Fit());
+        synchronized (fit) {
+            fit.add(statements, rows);
+            if (fit.suspect || fit.count < properties.getSuspectMinRequests()
+                    || fit.maxStatements < properties.getSuspectMinStatements()) {
+                return Double.NaN;
+            }
+            double slope = fit.slope();
+            if (!(slope >= properties.getSuspectStatementsPerRow())) {
+                return Double.NaN;
+            }
+            fit.suspect = true;
+            return slope;
+        }
+    }
+
+    public boolean isSuspect(String endpoint) {
+        Fit fit = fits.get(endpoint);
+        if (fit == null) {
+            return false;
+        }
+        synchronized (fit) {
+            return fit.suspect;
+        }
+    }
+
+    private static final class Fit {
+
+        private long count;
+        private double sumRows;
+        private double sumStatements;
+        private double sumRowsSquared;
+        private double sumRowsStatements;
+        private int maxStatements;
+        private boolean suspect;
+
+        private void add(int statements, long rows) {
+            count++;
+            sumRows += rows;
+            sumStatements += statements;
+            sumRowsSquared += (double) rows * rows;
+            sumRowsStatements += (double) rows * statements;
+            maxStatements = Math.max(maxStatements, statements);
+        }
+
+        // NaN while every request fetched the same number of rows
+        private double slope() {
+            double variance = count * sumRowsSquared - sumRows * sumRows;
+            return variance <= 0 ? Double.NaN : (count * sumRowsStatements - sumRows * sumStatements) / variance;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.tatianepro.biblioteca.config.sql;
+
+/**
+ * JDBC statements executed, rows fetched and time spent executing them by the current thread, between
+ * {@link #start()} and {@link #end()}. Only one thread writes to an instance, the one serving the request.
+ */
+public final class SqlStatistics {
+
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long rows;
+    private long nanos;
+
+    public static SqlStatistics start() {
+        SqlStatistics statistics = new SqlStatistics();
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    /**
+     * The statistics of the current thread, {@code null} outside of a {@link #start()} / {@link #end()} scope.
+     */
+    public static SqlStatistics current() {
+        return CURRENT.get();
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    void statement(long elapsedNanos) {
+        statements++;
+        nanos += elapsedNanos;
+    }
+
+    void row() {
+        rows++;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.tatianepro.biblioteca.config.sql;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Statement accounting per request: the data source is wrapped in a {@link SqlStatisticsDataSource}, which
+ * unwraps to the Hikari pool for its metrics, and the {@link SqlStatisticsFilter} is registered here rather
+ * than scanned, so the {@code @WebMvcTest} slices of the controllers do not pick it up.
+ */
+@Configuration
+public class SqlStatisticsConfig {
+
+    // static: a post processor must not wait for this configuration to be instantiated
+    @Bean
+    public static BeanPostProcessor sqlStatisticsDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource && !(bean instanceof SqlStatisticsDataSource)
+                        ? new SqlStatisticsDataSource((DataSource) bean)
+                        : bean;
+            }
+        };
+    }
+
+    @Bean
+    public SqlStatisticsFilter sqlStatisticsFilter(SqlStatisticsProperties properties, NPlusOneDetector detector,
+                                                   MeterRegistry meterRegistry) {
+        return new SqlStatisticsFilter(properties, detector, meterRegistry);
+    }
+}
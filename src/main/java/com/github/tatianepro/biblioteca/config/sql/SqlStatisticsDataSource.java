@@ -0,0 +1,91 @@
+package com.github.tatianepro.biblioteca.config.sql;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Counts into the {@link SqlStatistics} of the current thread every statement executed (a batch counts
+ * once, it is one round trip), the time its execution took and every row read from its result sets.
+ * <p>
+ * Connections taken outside of a statistics scope, by the scheduled jobs and the outbox workers, are
+ * returned untouched, so they pay nothing for the instrumentation.
+ */
+public class SqlStatisticsDataSource extends DelegatingDataSource {
+
+    public SqlStatisticsDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return instrument(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return instrument(super.getConnection(username, password));
+    }
+
+    private static Connection instrument(Connection connection) {
+        SqlStatistics statistics = SqlStatistics.current();
+        if (statistics == null) {
+            return connection;
+        }
+        return (Connection) proxy(Connection.class, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            return result instanceof Statement ? instrument((Statement) result, statistics) : result;
+        });
+    }
+
+    private static Statement instrument(Statement statement, SqlStatistics statistics) {
+        Class<? extends Statement> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return (Statement) proxy(type, (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute")) {
+                Object result = invoke(statement, method, args);
+                return result instanceof ResultSet ? instrument((ResultSet) result, statistics) : result;
+            }
+            long start = System.nanoTime();
+            try {
+                Object result = invoke(statement, method, args);
+                return result instanceof ResultSet ? instrument((ResultSet) result, statistics) : result;
+            } finally {
+                statistics.statement(System.nanoTime() - start);
+            }
+        });
+    }
+
+    private static ResultSet instrument(ResultSet resultSet, SqlStatistics statistics) {
+        return (ResultSet) proxy(ResultSet.class, (proxy, method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            if (Boolean.TRUE.equals(result) && "next".equals(method.getName())) {
+                statistics.row();
+            }
+            return result;
+        });
+    }
+
+    private static Object proxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(SqlStatisticsDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
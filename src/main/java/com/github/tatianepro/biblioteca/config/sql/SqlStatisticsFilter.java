@@ -0,0 +1,170 @@
+package com.github.tatianepro.biblioteca.config.sql;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens the {@link SqlStatistics} of every request and, once it is handled, records them per endpoint as
+ * {@value #STATEMENTS}, {@value #ROWS} and {@value #TIME}, tagged with the method and the uri template the
+ * way {@code http.server.requests} is. Endpoints the {@link NPlusOneDetector} suspects of running a query
+ * per fetched row are logged once and counted in {@value #N_PLUS_ONE} on every further request.
+ * <p>
+ * The same numbers go back to the client in a {@code Server-Timing: db;dur=..;desc=".."} header, added
+ * before the first byte of the body is written, as the body commits the response.
+ */
+@Slf4j
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS = "biblioteca.sql.statements";
+    public static final String ROWS = "biblioteca.sql.rows";
+    public static final String TIME = "biblioteca.sql.time";
+    public static final String N_PLUS_ONE = "biblioteca.sql.n-plus-one";
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    private final SqlStatisticsProperties properties;
+    private final NPlusOneDetector detector;
+    private final MeterRegistry meterRegistry;
+
+    public SqlStatisticsFilter(SqlStatisticsProperties properties, NPlusOneDetector detector, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.detector = detector;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStatistics statistics = SqlStatistics.start();
+        ServerTimingResponse timedResponse = properties.isServerTiming() ? new ServerTimingResponse(response, statistics) : null;
+        try {
+            filterChain.doFilter(request, timedResponse == null ? response : timedResponse);
+        } finally {
+            SqlStatistics.end();
+            if (timedResponse != null) {
+                // responses without a body are still open here
+                timedResponse.addServerTiming();
+            }
+            record(request, statistics);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStatistics statistics) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern == null) {
+            // not mapped to a controller, resources and 404s would only add noise
+            return;
+        }
+        String endpoint = request.getMethod() + " " + pattern;
+        Tags tags = Tags.of("method", request.getMethod(), "uri", pattern.toString());
+        DistributionSummary.builder(STATEMENTS)
+                .description("JDBC statements executed per request")
+                .baseUnit("statements")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(statistics.getStatements());
+        DistributionSummary.builder(ROWS)
+                .description("Rows read from the result sets per request")
+                .baseUnit("rows")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(statistics.getRows());
+        Timer.builder(TIME)
+                .description("Time spent executing JDBC statements per request")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(statistics.getNanos(), TimeUnit.NANOSECONDS);
+        log.debug(" -----> {}: {} statements, {} rows, {} ms in the database", endpoint,
+                statistics.getStatements(), statistics.getRows(), TimeUnit.NANOSECONDS.toMillis(statistics.getNanos()));
+
+        double statementsPerRow = detector.record(endpoint, statistics.getStatements(), statistics.getRows());
+        if (!Double.isNaN(statementsPerRow)) {
+            log.warn(" -----> possible N+1 queries on {}: {} statements per fetched row", endpoint,
+                    String.format(Locale.ROOT, "%.2f", statementsPerRow));
+        }
+        if (detector.isSuspect(endpoint)) {
+            Counter.builder(N_PLUS_ONE)
+                    .description("Requests to endpoints whose statements grow with the rows they fetch")
+                    .tags(tags)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private static final class ServerTimingResponse extends HttpServletResponseWrapper {
+
+        private final SqlStatistics statistics;
+        private boolean added;
+
+        private ServerTimingResponse(HttpServletResponse response, SqlStatistics statistics) {
+            super(response);
+            this.statistics = statistics;
+        }
+
+        private void addServerTiming() {
+            if (added || isCommitted()) {
+                return;
+            }
+            added = true;
+            addHeader(SERVER_TIMING, String.format(Locale.ROOT, "db;dur=%.3f;desc=\"%d statements, %d rows\"",
+                    statistics.getNanos() / 1_000_000.0, statistics.getStatements(), statistics.getRows()));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addServerTiming();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addServerTiming();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addServerTiming();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addServerTiming();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addServerTiming();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addServerTiming();
+            super.sendRedirect(location);
+        }
+    }
+}
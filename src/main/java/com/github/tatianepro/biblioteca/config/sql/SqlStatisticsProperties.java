@@ -0,0 +1,23 @@
+package com.github.tatianepro.biblioteca.config.sql;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.sql-statistics")
+public class SqlStatisticsProperties {
+
+    // counts the statements, rows and database time of every request handled by a controller
+    private boolean enabled = true;
+
+    // reports them to the client too, as the db entry of a Server-Timing response header
+    private boolean serverTiming = true;
+
+    // an endpoint is an N+1 suspect once the statements it runs grow by at least this much per fetched row,
+    // measured over at least suspect-min-requests requests of which one ran suspect-min-statements statements or more
+    private double suspectStatementsPerRow = 0.1;
+    private int suspectMinRequests = 20;
+    private int suspectMinStatements = 10;
+}
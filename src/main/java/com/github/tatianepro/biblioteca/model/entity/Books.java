@@ -3,6 +3,7 @@ package com.github.tatianepro.biblioteca.model.entity;
 import lombok.*;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @NoArgsConstructor
@@ -12,12 +13,46 @@ import java.util.List;
 @Entity
 public class Books {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled sequence: ids are reserved 50 at a time, so Hibernate can batch the inserts (IDENTITY cannot)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "books_seq")
+    @SequenceGenerator(name = "books_seq", sequenceName = "books_seq", allocationSize = 50)
     private Long id;
     private String title;
     private String author;
     private String isbn;
+    // optimistic locking: an update of a stale copy fails instead of overwriting a newer one
+    @Version
+    private Long version;
+    // last insert or update, the search index of every instance polls it (V8)
+    private LocalDateTime updatedAt;
     @OneToMany(mappedBy = "book")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude  // keeps equals/hashCode/toString from lazily loading the whole loan history
     private List<Loan> loans;
 
+    // title and author as last read from or written to the database, so a retried update can tell
+    // whether the concurrent writer changed the same fields
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private String storedTitle;
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private String storedAuthor;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void rememberStoredState() {
+        storedTitle = title;
+        storedAuthor = author;
+    }
+
 }
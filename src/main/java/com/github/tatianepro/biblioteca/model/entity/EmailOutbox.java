@@ -0,0 +1,40 @@
+package com.github.tatianepro.biblioteca.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@Entity
+public class EmailOutbox {
+
+    public enum Status { PENDING, PROCESSING, SENT, FAILED }
+
+    // size of the message column (V5), the notices are rendered to fit it
+    public static final int MAX_MESSAGE_LENGTH = 4000;
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private String recipient;
+    @Column(length = MAX_MESSAGE_LENGTH)
+    private String message;
+    private LocalDate noticeDate;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Status status;
+    private int attempts;
+    private LocalDateTime availableAt;
+    @Column(length = 64)
+    private String claimedBy;
+    private LocalDateTime claimedAt;
+    private LocalDateTime sentAt;
+
+}
@@ -0,0 +1,29 @@
+package com.github.tatianepro.biblioteca.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@Entity
+public class JobLease {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+    @Column(length = 64)
+    private String owner;
+    private LocalDateTime lockedUntil;
+    private LocalDate lastCompleted;
+
+}
@@ -0,0 +1,38 @@
+package com.github.tatianepro.biblioteca.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// customer emails in [fromEmail, toEmail) of the late loan run of runDate, toEmail null for the last shard
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@Entity
+public class LateLoanShard {
+
+    public enum Status { PENDING, PROCESSING, DONE }
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private LocalDate runDate;
+    private int shard;
+    // loans due before this date are late
+    private LocalDate lateDate;
+    private String fromEmail;
+    private String toEmail;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Status status;
+    @Column(length = 64)
+    private String owner;
+    private LocalDateTime lockedUntil;
+    private int notices;
+
+}
@@ -3,7 +3,9 @@ package com.github.tatianepro.biblioteca.model.entity;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import javax.persistence.*;
 import java.time.LocalDate;
@@ -24,6 +26,29 @@ public class Loan {
     @ManyToOne
     private Books book;
     private LocalDate loanDate;
+    private LocalDate dueDate;
     private Boolean returned;
+    @Version
+    private Long version;
 
+    // returned as last read from or written to the database, so an update knows the state it changes from
+    @Transient
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Boolean storedReturned;
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void rememberStoredState() {
+        storedReturned = returned;
+    }
+
+    public boolean isOpen() {
+        return !Boolean.TRUE.equals(returned);
+    }
+
+    public boolean wasOpen() {
+        return !Boolean.TRUE.equals(storedReturned);
+    }
 }
@@ -1,11 +1,55 @@
 package com.github.tatianepro.biblioteca.model.repository;
 
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.config.CacheConfig;
 import com.github.tatianepro.biblioteca.model.entity.Books;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface BookRepository extends JpaRepository<Books, Long> {
+    @Cacheable(cacheNames = CacheConfig.ISBN_EXISTS, unless = "!#result")
     boolean existsByIsbn(String isbn);
     Optional<Books> findByIsbn(String isbn);
+
+    @Query("select b.id from Books b where b.isbn = :isbn")
+    Optional<Long> findIdByIsbn(@Param("isbn") String isbn);
+
+    @Query("select b.isbn from Books b where b.isbn in :isbns")
+    Set<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    // books written since the instant, through any instance
+    @Query("select b from Books b where b.updatedAt >= :since")
+    List<Books> findUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("select b.id from Books b")
+    List<Long> findAllIds();
+
+    // read-only projection: no managed entity, no dirty checking snapshot; the version goes back in the update
+    @Query("select new com.github.tatianepro.biblioteca.api.dto.BookDto(b.id, b.title, b.author, b.isbn, b.version) " +
+            " from Books b where b.id = :id")
+    Optional<BookDto> findDtoById(@Param("id") Long id);
+
+    // database cursor fetched 500 rows at a time, must be consumed (and closed) inside a transaction
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select new com.github.tatianepro.biblioteca.api.dto.BookDto(b.id, b.title, b.author, b.isbn) " +
+            " from Books b order by b.id")
+    Stream<BookDto> streamAllDto();
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select b.isbn from Books b")
+    Stream<String> streamAllIsbns();
 }
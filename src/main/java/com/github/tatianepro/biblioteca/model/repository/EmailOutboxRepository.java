@@ -0,0 +1,71 @@
+package com.github.tatianepro.biblioteca.model.repository;
+
+import com.github.tatianepro.biblioteca.model.entity.EmailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    @Query("select o.recipient from EmailOutbox o where o.noticeDate = :noticeDate and o.recipient in :recipients")
+    List<String> findEnqueuedRecipients(@Param("noticeDate") LocalDate noticeDate, @Param("recipients") Collection<String> recipients);
+
+    // candidates of one worker partition, oldest first; claim() decides which of them the worker really gets
+    @Query("select o.id from EmailOutbox o " +
+            " where o.status = :status and o.availableAt <= :now and mod(o.id, :partitions) = :partition " +
+            " order by o.id")
+    List<Long> findClaimableIds(@Param("status") EmailOutbox.Status status,
+                                @Param("now") LocalDateTime now,
+                                @Param("partition") int partition,
+                                @Param("partitions") int partitions,
+                                Pageable pageRequest);
+
+    // conditional update: a row already claimed by another worker no longer matches 'o.status = :from'
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EmailOutbox o set o.status = :to, o.claimedBy = :owner, o.claimedAt = :now " +
+            " where o.id in :ids and o.status = :from")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("owner") String owner,
+              @Param("from") EmailOutbox.Status from,
+              @Param("to") EmailOutbox.Status to,
+              @Param("now") LocalDateTime now);
+
+    List<EmailOutbox> findByClaimedByAndStatus(String claimedBy, EmailOutbox.Status status);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EmailOutbox o set o.status = :status, o.sentAt = :now where o.id in :ids and o.claimedBy = :owner")
+    int markSent(@Param("ids") Collection<Long> ids,
+                 @Param("owner") String owner,
+                 @Param("status") EmailOutbox.Status status,
+                 @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EmailOutbox o set o.status = :status, o.attempts = o.attempts + 1, o.availableAt = :availableAt, " +
+            " o.claimedBy = null, o.claimedAt = null where o.id in :ids and o.claimedBy = :owner")
+    int release(@Param("ids") Collection<Long> ids,
+                @Param("owner") String owner,
+                @Param("status") EmailOutbox.Status status,
+                @Param("availableAt") LocalDateTime availableAt);
+
+    // claims left behind by an instance that died while sending
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EmailOutbox o set o.status = :to, o.claimedBy = null, o.claimedAt = null " +
+            " where o.status = :from and o.claimedAt < :expiredBefore")
+    int requeueExpired(@Param("from") EmailOutbox.Status from,
+                       @Param("to") EmailOutbox.Status to,
+                       @Param("expiredBefore") LocalDateTime expiredBefore);
+
+    long countByStatus(EmailOutbox.Status status);
+}
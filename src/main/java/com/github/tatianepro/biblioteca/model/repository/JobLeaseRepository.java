@@ -0,0 +1,43 @@
+package com.github.tatianepro.biblioteca.model.repository;
+
+import com.github.tatianepro.biblioteca.model.entity.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    // conditional update: only one node matches while the job has not run today and nobody holds the lease
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update JobLease l set l.owner = :owner, l.lockedUntil = :until where l.name = :name " +
+            " and ( l.lastCompleted is null or l.lastCompleted < :today ) " +
+            " and ( l.lockedUntil is null or l.lockedUntil < :now )")
+    int acquire(@Param("name") String name,
+                @Param("owner") String owner,
+                @Param("today") LocalDate today,
+                @Param("now") LocalDateTime now,
+                @Param("until") LocalDateTime until);
+
+    // same as acquire, but only when a node started today's run and its lease expired before it completed
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update JobLease l set l.owner = :owner, l.lockedUntil = :until where l.name = :name " +
+            " and ( l.lastCompleted is null or l.lastCompleted < :today ) " +
+            " and l.lockedUntil is not null and l.lockedUntil < :now")
+    int takeOver(@Param("name") String name,
+                 @Param("owner") String owner,
+                 @Param("today") LocalDate today,
+                 @Param("now") LocalDateTime now,
+                 @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update JobLease l set l.lockedUntil = null, l.lastCompleted = :today where l.name = :name and l.owner = :owner")
+    int complete(@Param("name") String name, @Param("owner") String owner, @Param("today") LocalDate today);
+}
@@ -0,0 +1,56 @@
+package com.github.tatianepro.biblioteca.model.repository;
+
+import com.github.tatianepro.biblioteca.model.entity.LateLoanShard;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface LateLoanShardRepository extends JpaRepository<LateLoanShard, Long> {
+
+    boolean existsByRunDate(LocalDate runDate);
+
+    // pending shards, and shards whose node stopped extending the lock (crashed), oldest run first
+    @Query("select s.id from LateLoanShard s " +
+            " where s.status = :pending or ( s.status = :processing and s.lockedUntil < :now ) " +
+            " order by s.runDate, s.shard")
+    List<Long> findClaimableIds(@Param("pending") LateLoanShard.Status pending,
+                                @Param("processing") LateLoanShard.Status processing,
+                                @Param("now") LocalDateTime now,
+                                Pageable pageRequest);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update LateLoanShard s set s.status = :processing, s.owner = :owner, s.lockedUntil = :until " +
+            " where s.id = :id and ( s.status = :pending or ( s.status = :processing and s.lockedUntil < :now ) )")
+    int claim(@Param("id") Long id,
+              @Param("owner") String owner,
+              @Param("pending") LateLoanShard.Status pending,
+              @Param("processing") LateLoanShard.Status processing,
+              @Param("now") LocalDateTime now,
+              @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update LateLoanShard s set s.lockedUntil = :until " +
+            " where s.id = :id and s.owner = :owner and s.status = :processing")
+    int extend(@Param("id") Long id,
+               @Param("owner") String owner,
+               @Param("processing") LateLoanShard.Status processing,
+               @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update LateLoanShard s set s.status = :done, s.lockedUntil = null, s.notices = :notices " +
+            " where s.id = :id and s.owner = :owner")
+    int complete(@Param("id") Long id,
+                 @Param("owner") String owner,
+                 @Param("done") LateLoanShard.Status done,
+                 @Param("notices") int notices);
+}
@@ -1,27 +1,105 @@
 package com.github.tatianepro.biblioteca.model.repository;
 
+import com.github.tatianepro.biblioteca.api.dto.LateLoanDto;
+import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
 import com.github.tatianepro.biblioteca.model.entity.Books;
 import com.github.tatianepro.biblioteca.model.entity.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
     @Query("select case when ( count(l.id) > 0 ) then true else false end " +
             " from Loan l where l.book = :book and ( l.returned is null or l.returned is false )")
     Boolean existsByBookAndNotReturned(@Param("book") Books book);
 
-    @Query("select l from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer")
+    // same check for a returned loan lent again, leaving the loan itself out
+    @Query("select case when ( count(l.id) > 0 ) then true else false end " +
+            " from Loan l where l.book = :book and l.id <> :id and ( l.returned is null or l.returned is false )")
+    Boolean existsOtherOpenLoan(@Param("book") Books book, @Param("id") Long id);
+
+    // the book is fetched in the same select, so a page costs one query plus the count whatever its size
+    @Query(value = "select l from Loan as l join fetch l.book as b where b.isbn = :isbn or l.customer = :customer",
+            countQuery = "select count(l) from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer")
     Page<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customerName, Pageable pageRequest);
 
+    // read-only projection of findByBookIsbnOrCustomer straight into the response shape
+    @Query(value = "select new com.github.tatianepro.biblioteca.api.dto.LoanFilterDto(" +
+            " l.id, l.customer, l.customerEmail, b.id, b.title, b.author, b.isbn) " +
+            " from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer",
+            countQuery = "select count(l) from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer")
+    Page<LoanFilterDto> findDtoByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customerName, Pageable pageRequest);
+
+    @EntityGraph(attributePaths = "book")
     Page<Loan> findByBook(Books book, Pageable pageRequest);
 
-    @Query("select l from Loan l where l.loanDate <= :threeDaysAgo and (l.returned is null or l.returned is false)")
-    List<Loan> findByLoanDateLessThanAndNotReturned(@Param("threeDaysAgo") LocalDate threeDaysAgo);
-}
+    // keyset pagination: first slice of the loan history, newest first, without count query;
+    // loans without a loan date have no position in the keyset and are left out, like the next slices do
+    @EntityGraph(attributePaths = "book")
+    Slice<Loan> findByBookAndLoanDateNotNullOrderByLoanDateDescIdDesc(Books book, Pageable pageRequest);
+
+    // keyset pagination: next slice after the (loanDate, id) of the last loan already read
+    @Query("select l from Loan l where l.book = :book " +
+            " and ( l.loanDate < :loanDate or ( l.loanDate = :loanDate and l.id < :id ) ) " +
+            " order by l.loanDate desc, l.id desc")
+    @EntityGraph(attributePaths = "book")
+    Slice<Loan> findByBookAfter(@Param("book") Books book,
+                                @Param("loanDate") LocalDate loanDate,
+                                @Param("id") Long id,
+                                Pageable pageRequest);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select l.book.id from Loan l where l.returned is null or l.returned is false")
+    Stream<Long> streamBorrowedBookIds();
+
+    @Query("select count(l) from Loan l where l.returned is null or l.returned is false")
+    long countOpenLoans();
+
+    // keyset chunks of the late loans grouped by customer: the next chunk starts after the (customerEmail, id)
+    // of the last loan already read, so the loans of a customer are always read one after the other
+    @Query("select new com.github.tatianepro.biblioteca.api.dto.LateLoanDto(" +
+            " l.id, l.customer, l.customerEmail, b.title, l.loanDate, l.dueDate) " +
+            " from Loan l join l.book b " +
+            " where l.dueDate < :today and (l.returned is null or l.returned is false) " +
+            " and ( l.customerEmail > :afterEmail or ( l.customerEmail = :afterEmail and l.id > :afterId ) ) " +
+            " order by l.customerEmail, l.id")
+    Slice<LateLoanDto> findLateLoansAfter(@Param("today") LocalDate today,
+                                          @Param("afterEmail") String afterEmail,
+                                          @Param("afterId") Long afterId,
+                                          Pageable pageRequest);
+
+    // same keyset walk, limited to the customer emails before toEmail (one shard of the run)
+    @Query("select new com.github.tatianepro.biblioteca.api.dto.LateLoanDto(" +
+            " l.id, l.customer, l.customerEmail, b.title, l.loanDate, l.dueDate) " +
+            " from Loan l join l.book b " +
+            " where l.dueDate < :today and (l.returned is null or l.returned is false) " +
+            " and ( l.customerEmail > :afterEmail or ( l.customerEmail = :afterEmail and l.id > :afterId ) ) " +
+            " and l.customerEmail < :toEmail " +
+            " order by l.customerEmail, l.id")
+    Slice<LateLoanDto> findLateLoansBetween(@Param("today") LocalDate today,
+                                            @Param("afterEmail") String afterEmail,
+                                            @Param("afterId") Long afterId,
+                                            @Param("toEmail") String toEmail,
+                                            Pageable pageRequest);
+
+    @Query("select count(l) from Loan l where l.dueDate < :today and (l.returned is null or l.returned is false) " +
+            " and l.customerEmail is not null")
+    long countLateLoans(@Param("today") LocalDate today);
 
+    // customer email of the late loan at the offset of the page, in the order of findLateLoansAfter
+    @Query("select l.customerEmail from Loan l where l.dueDate < :today and (l.returned is null or l.returned is false) " +
+            " and l.customerEmail is not null order by l.customerEmail, l.id")
+    List<String> findLateLoanEmails(@Param("today") LocalDate today, Pageable pageRequest);}
@@ -0,0 +1,14 @@
+package com.github.tatianepro.biblioteca.service;
+
+import com.github.tatianepro.biblioteca.api.dto.CatalogImportDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface BookCatalogService {
+
+    long export(CatalogFormat format, OutputStream outputStream) throws IOException;
+
+    CatalogImportDto importCatalog(CatalogFormat format, InputStream inputStream) throws IOException;
+}
@@ -1,17 +1,22 @@
 package com.github.tatianepro.biblioteca.service;
 
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
 import com.github.tatianepro.biblioteca.model.entity.Books;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface BookService {
     Books save(Books book);
+    List<Books> saveAll(List<Books> books);
     Optional<Books> getById(Long id);
+    Optional<BookDto> getDtoById(Long id);
     void delete(Books book);
     Books update(Books book);
     Page<Books> find(Books filter, Pageable pageRequest);
-    Optional<Books> getBookByIsbn(String isbn);
+    Optional<Long> getBookIdByIsbn(String isbn);
+    Books getReference(Long id);
 }
 
@@ -0,0 +1,238 @@
+package com.github.tatianepro.biblioteca.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.api.exception.BusinessException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line oriented file formats of the catalog export: one book per line, so files of any size
+ * are written (and read) without holding more than one book in memory.
+ */
+public enum CatalogFormat {
+
+    NDJSON("application/x-ndjson", "ndjson") {
+        private final ObjectWriter jsonWriter = new ObjectMapper().writerFor(BookDto.class);
+        private final ObjectReader jsonReader = new ObjectMapper()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .readerFor(BookDto.class);
+
+        @Override
+        public void writeHeader(Writer writer) {
+        }
+
+        @Override
+        public void write(Writer writer, BookDto book) throws IOException {
+            writer.write(jsonWriter.writeValueAsString(book));
+            writer.write('\n');
+        }
+
+        @Override
+        public boolean isHeader(String record) {
+            return false;
+        }
+
+        @Override
+        public BookDto parse(String record) {
+            try {
+                return jsonReader.readValue(record);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Malformed json: " + e.getOriginalMessage());
+            }
+        }
+    },
+
+    CSV("text/csv", "csv") {
+        @Override
+        public void writeHeader(Writer writer) throws IOException {
+            writer.write(HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(Writer writer, BookDto book) throws IOException {
+            writer.write(book.getId() == null ? "" : book.getId().toString());
+            writer.write(',');
+            writeField(writer, book.getTitle());
+            writer.write(',');
+            writeField(writer, book.getAuthor());
+            writer.write(',');
+            writeField(writer, book.getIsbn());
+            writer.write('\n');
+        }
+
+        @Override
+        public String readRecord(BufferedReader reader, int maxLength) throws IOException {
+            String record = readLine(reader, maxLength);
+            // an odd number of quotes means a quoted field goes on in the next line, up to the length limit:
+            // an unterminated quote cannot swallow the rest of the file
+            while (record != null && record != OVERSIZED_RECORD && countQuotes(record) % 2 != 0) {
+                String next = readLine(reader, Math.max(0, maxLength - record.length() - 1));
+                if (next == null || next == OVERSIZED_RECORD) {
+                    return next;
+                }
+                record = record + '\n' + next;
+            }
+            return record;
+        }
+
+        @Override
+        public boolean isHeader(String record) {
+            return HEADER.equals(record);
+        }
+
+        @Override
+        public BookDto parse(String record) {
+            List<String> fields = splitFields(record);
+            if (fields.size() != 4) {
+                throw new IllegalArgumentException("Expected 4 fields but found " + fields.size());
+            }
+            return new BookDto(null, emptyToNull(fields.get(1)), emptyToNull(fields.get(2)), emptyToNull(fields.get(3)));
+        }
+
+        private int countQuotes(String value) {
+            int quotes = 0;
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) == '"') {
+                    quotes++;
+                }
+            }
+            return quotes;
+        }
+
+        private List<String> splitFields(String record) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < record.length(); i++) {
+                char c = record.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("Unterminated quoted field");
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        private String emptyToNull(String value) {
+            return value.isEmpty() ? null : value;
+        }
+
+        // RFC 4180: quotes the field when it holds a separator, a quote or a line break
+        private void writeField(Writer writer, String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    };
+
+    private static final String HEADER = "id,title,author,isbn";
+
+    /**
+     * Returned by {@link #readRecord(BufferedReader, int)} in place of a record longer than the limit,
+     * whose characters were skipped up to the end of the line. Compared by reference.
+     */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    public static final String OVERSIZED_RECORD = new String("<oversized record>");
+
+    private final String mediaType;
+    private final String extension;
+
+    CatalogFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public abstract void writeHeader(Writer writer) throws IOException;
+
+    public abstract void write(Writer writer, BookDto book) throws IOException;
+
+    /**
+     * Reads the next record, null at the end of the file and {@link #OVERSIZED_RECORD} when it is longer
+     * than {@code maxLength} characters, in which case the next record starts at the next line.
+     */
+    public String readRecord(BufferedReader reader, int maxLength) throws IOException {
+        return readLine(reader, maxLength);
+    }
+
+    // BufferedReader.readLine would buffer a line of any length
+    private static String readLine(BufferedReader reader, int maxLength) throws IOException {
+        int c = reader.read();
+        if (c < 0) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        while (c >= 0 && c != '\n') {
+            if (c != '\r' && line.length() >= maxLength) {
+                while (c >= 0 && c != '\n') {
+                    c = reader.read();
+                }
+                return OVERSIZED_RECORD;
+            }
+            line.append((char) c);
+            c = reader.read();
+        }
+        if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+            line.setLength(line.length() - 1);
+        }
+        return line.toString();
+    }
+
+    public abstract boolean isHeader(String record);
+
+    /**
+     * Parses one record into a book, the id is never read. Throws {@link IllegalArgumentException}
+     * when the record is malformed.
+     */
+    public abstract BookDto parse(String record);
+
+    public static CatalogFormat of(String name) {
+        for (CatalogFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new BusinessException("Format must be ndjson or csv");
+    }
+}
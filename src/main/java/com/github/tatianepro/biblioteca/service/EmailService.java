@@ -1,7 +1,8 @@
 package com.github.tatianepro.biblioteca.service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface EmailService {
-    void sendMails(String message, List<String> mailList);
+    CompletableFuture<Void> sendMails(String message, List<String> mailList);
 }
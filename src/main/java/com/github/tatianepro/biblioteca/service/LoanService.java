@@ -1,11 +1,14 @@
 package com.github.tatianepro.biblioteca.service;
 
+import com.github.tatianepro.biblioteca.api.dto.LateLoanDto;
+import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
 import com.github.tatianepro.biblioteca.model.entity.Books;
 import com.github.tatianepro.biblioteca.model.entity.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
-import java.util.List;
+import java.time.LocalDate;
 import java.util.Optional;
 
 public interface LoanService {
@@ -13,6 +16,10 @@ public interface LoanService {
     Optional<Loan> getById(Long id);
     Loan update(Loan loan);
     Page<Loan> find(Loan loan, Pageable pageRequest);
+    Page<LoanFilterDto> findDto(Loan loan, Pageable pageRequest);
     Page<Loan> getLoansByBook(Books book, Pageable pageRequest);
-    List<Loan> getAllLateLoans();
+    Slice<Loan> getLoansByBookAfter(Books book, LocalDate afterLoanDate, Long afterId, int size);
+    Slice<LateLoanDto> getLateLoansAfter(LocalDate today, String afterEmail, Long afterId, String toEmail, int size);
+    long countLateLoans(LocalDate today);
+    Optional<String> getLateLoanEmailAt(LocalDate today, long offset);
 }
@@ -1,34 +1,166 @@
 package com.github.tatianepro.biblioteca.service;
 
-import com.github.tatianepro.biblioteca.model.entity.Loan;
+import com.github.tatianepro.biblioteca.api.dto.LateLoanDto;
+import com.github.tatianepro.biblioteca.model.entity.LateLoanShard;
+import com.github.tatianepro.biblioteca.service.cluster.ClusterLease;
+import com.github.tatianepro.biblioteca.service.cluster.LateLoanShards;
+import com.github.tatianepro.biblioteca.service.notice.LateLoanNotice;
+import com.github.tatianepro.biblioteca.service.notice.LateLoanNoticeTemplate;
+import com.github.tatianepro.biblioteca.service.outbox.EmailOutboxWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class SchedulingService {
 
     private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
+    static final String LATE_LOANS_JOB = "late-loans";
 
-    @Value("${application.mail.lateLoans.message}")
-    private String message;
+    @Value("${application.mail.lateLoans.chunk-size:500}")
+    private int chunkSize;
 
     private final LoanService loanService;
-    private final EmailService emailService;
+    private final EmailOutboxWriter emailOutbox;
+    private final LateLoanNoticeTemplate noticeTemplate;
+    private final ClusterLease clusterLease;
+    private final LateLoanShards shards;
+    private final MeterRegistry meterRegistry;
 
+    /**
+     * Every node fires the cron tick; the one getting the {@link ClusterLease} plans today's run into
+     * {@link LateLoanShards} and every node, itself included, then works through the shards. The other
+     * nodes pick up the shards left on the next {@link #pickUpLateLoanShards} poll, so the run gets faster
+     * with every node added.
+     */
     @Scheduled(cron = CRON_LATE_LOANS)
     public void sendEmailToLateLoans() {
-        List<Loan> allLateLoans = loanService.getAllLateLoans();
-        List<String> mailList = allLateLoans
-                .stream()
-                .map(loan -> loan.getCustomerEmail())
-                .collect(Collectors.toList());
-        emailService.sendMails(message, mailList);
+        LocalDate today = LocalDate.now();
+        if (clusterLease.tryAcquire(LATE_LOANS_JOB, today)) {
+            planRun(today);
+        }
+        processShards();
+    }
+
+    /**
+     * Takes over the planning when the lease holder died before planning today's run, and helps with
+     * the shards still pending or abandoned by a node that stopped.
+     */
+    @Scheduled(fixedDelayString = "${application.cluster.poll-millis:30000}",
+            initialDelayString = "${application.cluster.poll-millis:30000}")
+    public void pickUpLateLoanShards() {
+        LocalDate today = LocalDate.now();
+        if (clusterLease.takeOver(LATE_LOANS_JOB, today)) {
+            planRun(today);
+        }
+        processShards();
+    }
+
+    private void planRun(LocalDate today) {
+        int planned = shards.plan(today);
+        clusterLease.complete(LATE_LOANS_JOB, today);
+        log.info(" -----> late loan run of {} planned in {} shards", today, planned);
+    }
+
+    void processShards() {
+        Optional<LateLoanShard> shard;
+        while ((shard = shards.claim()).isPresent()) {
+            processShard(shard.get());
+        }
+    }
+
+    /**
+     * Walks the late loans of the shard in chunks of {@code chunk-size}, ordered by customer email and id,
+     * and writes one notice per customer, listing all of its late loans, to the email outbox. Each chunk
+     * is read and written before the next one is read, so the heap holds one chunk whatever the backlog;
+     * the loans of a customer split between two chunks are carried over to the next one. The outbox
+     * workers send the emails, a shard processed again after a crash does not notice the same customer
+     * twice on the same day.
+     */
+    void processShard(LateLoanShard shard) {
+        Timer chunkTimer = meterRegistry.timer("biblioteca.late.loans.chunk");
+        CustomerLoans customer = new CustomerLoans(noticeTemplate.getMaxItems());
+        LocalDate noticeDate = shard.getRunDate();
+        String afterEmail = shard.getFromEmail();
+        Long afterId = 0L;
+        long lateLoans = 0;
+        int enqueued = 0;
+        Slice<LateLoanDto> chunk;
+        do {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            chunk = loanService.getLateLoansAfter(shard.getLateDate(), afterEmail, afterId, shard.getToEmail(), chunkSize);
+            List<LateLoanNotice> notices = new ArrayList<>();
+            for (LateLoanDto loan : chunk) {
+                if (!customer.owns(loan)) {
+                    customer.flushTo(notices, noticeDate);
+                }
+                customer.add(loan);
+            }
+            if (!chunk.hasNext()) {
+                customer.flushTo(notices, noticeDate);
+            }
+            if (chunk.hasContent()) {
+                LateLoanDto last = chunk.getContent().get(chunk.getNumberOfElements() - 1);
+                afterEmail = last.getCustomerEmail();
+                afterId = last.getId();
+                lateLoans += chunk.getNumberOfElements();
+                enqueued += emailOutbox.enqueue(notices, noticeDate);
+            }
+            sample.stop(chunkTimer);
+            if (chunk.hasNext() && !shards.extend(shard)) {
+                log.warn(" -----> late loan shard {} of {} taken over by another node", shard.getShard(), noticeDate);
+                return;
+            }
+        } while (chunk.hasNext());
+        shards.complete(shard, enqueued);
+        meterRegistry.counter("biblioteca.late.loans.enqueued").increment(enqueued);
+        log.info(" -----> late loan shard {} of {}: {} late loans, {} customer notices enqueued",
+                shard.getShard(), noticeDate, lateLoans, enqueued);
+    }
+
+    // late loans of the customer being read, the first maxItems are kept for the notice and the rest only counted
+    private final class CustomerLoans {
+        private final int maxItems;
+        private final List<LateLoanDto> loans = new ArrayList<>();
+        private int count;
+
+        private CustomerLoans(int maxItems) {
+            this.maxItems = maxItems;
+        }
+
+        private boolean owns(LateLoanDto loan) {
+            return count == 0 || loans.get(0).getCustomerEmail().equals(loan.getCustomerEmail());
+        }
+
+        private void add(LateLoanDto loan) {
+            if (loans.size() < maxItems || loans.isEmpty()) {
+                loans.add(loan);
+            }
+            count++;
+        }
+
+        private void flushTo(List<LateLoanNotice> notices, LocalDate today) {
+            if (count == 0) {
+                return;
+            }
+            LateLoanDto first = loans.get(0);
+            notices.add(new LateLoanNotice(first.getCustomerEmail(),
+                    noticeTemplate.render(first.getCustomer(), loans, count, today)));
+            loans.clear();
+            count = 0;
+        }
     }
 
 }
@@ -0,0 +1,44 @@
+package com.github.tatianepro.biblioteca.service.cluster;
+
+import com.github.tatianepro.biblioteca.model.repository.JobLeaseRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Database lease deciding which node runs a daily job.
+ * <p>
+ * Every node fires the same cron tick, the conditional update on {@code job_lease} lets exactly one
+ * of them through per day. The holder marks the job completed for the day; if it dies first, its lease
+ * expires after {@code lease-millis} and {@link #takeOver} hands the run to another node.
+ */
+@Component
+public class ClusterLease {
+
+    private final JobLeaseRepository repository;
+    private final ClusterProperties properties;
+
+    public ClusterLease(JobLeaseRepository repository, ClusterProperties properties) {
+        this.repository = repository;
+        this.properties = properties;
+    }
+
+    public boolean tryAcquire(String job, LocalDate today) {
+        LocalDateTime now = LocalDateTime.now();
+        return repository.acquire(job, properties.getNodeId(), today, now, expiry(now)) == 1;
+    }
+
+    public boolean takeOver(String job, LocalDate today) {
+        LocalDateTime now = LocalDateTime.now();
+        return repository.takeOver(job, properties.getNodeId(), today, now, expiry(now)) == 1;
+    }
+
+    public void complete(String job, LocalDate today) {
+        repository.complete(job, properties.getNodeId(), today);
+    }
+
+    private LocalDateTime expiry(LocalDateTime now) {
+        return now.plusNanos(properties.getLeaseMillis() * 1_000_000);
+    }
+}
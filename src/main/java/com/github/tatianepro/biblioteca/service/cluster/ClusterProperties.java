@@ -0,0 +1,23 @@
+package com.github.tatianepro.biblioteca.service.cluster;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.cluster")
+public class ClusterProperties {
+
+    // identifies this node in job_lease.owner and late_loan_shard.owner, unique per running instance
+    private String nodeId = UUID.randomUUID().toString();
+
+    // a job lease or a shard lock not released or extended within this time is taken over by another node
+    private long leaseMillis = 600000;
+    private long shardLeaseMillis = 300000;
+
+    // customer email ranges a late loan run is split into
+    private int lateLoanShards = 8;
+}
@@ -0,0 +1,105 @@
+package com.github.tatianepro.biblioteca.service.cluster;
+
+import com.github.tatianepro.biblioteca.model.entity.LateLoanShard;
+import com.github.tatianepro.biblioteca.model.repository.LateLoanShardRepository;
+import com.github.tatianepro.biblioteca.service.LoanService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Splits a late loan run into customer email ranges that any node can process.
+ * <p>
+ * The lease holder {@link #plan}s the run: the boundaries are the emails found at every
+ * {@code count / late-loan-shards} late loans, so the shards hold about the same number of loans and
+ * the loans of a customer never straddle two shards. Nodes {@link #claim} shards with a conditional
+ * update and {@link #extend} the lock while they work; the shard of a node that stops extending it is
+ * claimed again by another one.
+ */
+@Component
+public class LateLoanShards {
+
+    private static final int CLAIM_CANDIDATES = 4;
+
+    private final LateLoanShardRepository repository;
+    private final LoanService loanService;
+    private final ClusterProperties properties;
+
+    public LateLoanShards(LateLoanShardRepository repository, LoanService loanService, ClusterProperties properties) {
+        this.repository = repository;
+        this.loanService = loanService;
+        this.properties = properties;
+    }
+
+    /**
+     * Splits the loans due before the run date.
+     *
+     * @return how many shards were written, 0 when the run was already planned or nothing is late
+     */
+    @Transactional
+    public int plan(LocalDate runDate) {
+        if (repository.existsByRunDate(runDate)) {
+            return 0;
+        }
+        long count = loanService.countLateLoans(runDate);
+        if (count == 0) {
+            return 0;
+        }
+        int shardCount = (int) Math.max(1, Math.min(properties.getLateLoanShards(), count));
+        List<String> boundaries = new ArrayList<>();
+        boundaries.add("");
+        for (int i = 1; i < shardCount; i++) {
+            loanService.getLateLoanEmailAt(runDate, count * i / shardCount)
+                    .filter(email -> email.compareTo(boundaries.get(boundaries.size() - 1)) > 0)
+                    .ifPresent(boundaries::add);
+        }
+        List<LateLoanShard> shards = new ArrayList<>();
+        for (int i = 0; i < boundaries.size(); i++) {
+            shards.add(LateLoanShard.builder()
+                    .runDate(runDate)
+                    .shard(i)
+                    .lateDate(runDate)
+                    .fromEmail(boundaries.get(i))
+                    .toEmail(i + 1 < boundaries.size() ? boundaries.get(i + 1) : null)
+                    .status(LateLoanShard.Status.PENDING)
+                    .build());
+        }
+        repository.saveAll(shards);
+        return shards.size();
+    }
+
+    public Optional<LateLoanShard> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> candidates = repository.findClaimableIds(LateLoanShard.Status.PENDING, LateLoanShard.Status.PROCESSING,
+                now, PageRequest.of(0, CLAIM_CANDIDATES));
+        for (Long id : candidates) {
+            if (repository.claim(id, properties.getNodeId(), LateLoanShard.Status.PENDING, LateLoanShard.Status.PROCESSING,
+                    now, expiry(now)) == 1) {
+                return repository.findById(id);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return false when the lock expired and another node claimed the shard
+     */
+    public boolean extend(LateLoanShard shard) {
+        return repository.extend(shard.getId(), properties.getNodeId(), LateLoanShard.Status.PROCESSING,
+                expiry(LocalDateTime.now())) == 1;
+    }
+
+    public void complete(LateLoanShard shard, int notices) {
+        repository.complete(shard.getId(), properties.getNodeId(), LateLoanShard.Status.DONE, notices);
+    }
+
+    private LocalDateTime expiry(LocalDateTime now) {
+        return now.plusNanos(properties.getShardLeaseMillis() * 1_000_000);
+    }
+}
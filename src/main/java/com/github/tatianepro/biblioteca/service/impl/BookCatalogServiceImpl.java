@@ -0,0 +1,261 @@
+package com.github.tatianepro.biblioteca.service.impl;
+
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.api.dto.CatalogImportDto;
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import com.github.tatianepro.biblioteca.service.BookCatalogService;
+import com.github.tatianepro.biblioteca.service.BookService;
+import com.github.tatianepro.biblioteca.service.CatalogFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import javax.validation.Validator;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class BookCatalogServiceImpl implements BookCatalogService {
+
+    private static final List<Books> END_OF_FILE = Collections.emptyList();
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private BookRepository repository;
+    private BookService bookService;
+    private Validator validator;
+    private int chunkSize;
+    private int queueCapacity;
+    private int maxRecordLength;
+
+    private final Semaphore imports;
+    private final ExecutorService writers;
+    private final AtomicInteger pendingChunks = new AtomicInteger();
+    private final Counter readCounter;
+    private final Counter createdCounter;
+    private final Counter duplicatedCounter;
+    private final Counter invalidCounter;
+    private final Timer chunkTimer;
+
+    public BookCatalogServiceImpl(BookRepository repository,
+                                  BookService bookService,
+                                  Validator validator,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${application.catalog.import.chunk-size:1000}") int chunkSize,
+                                  @Value("${application.catalog.import.queue-capacity:4}") int queueCapacity,
+                                  @Value("${application.catalog.import.max-concurrent:2}") int maxConcurrent,
+                                  @Value("${application.catalog.import.max-record-length:8192}") int maxRecordLength) {
+        this.repository = repository;
+        this.bookService = bookService;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+        this.maxRecordLength = maxRecordLength;
+        this.imports = new Semaphore(maxConcurrent);
+        // one writer per running import; the queue only holds the writer of an import that just gave up
+        // and whose thread is still winding down
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(maxConcurrent), runnable -> {
+            Thread thread = new Thread(runnable, "catalog-import-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.writers = executor;
+        this.readCounter = meterRegistry.counter("biblioteca.catalog.import.books", "outcome", "read");
+        this.createdCounter = meterRegistry.counter("biblioteca.catalog.import.books", "outcome", "created");
+        this.duplicatedCounter = meterRegistry.counter("biblioteca.catalog.import.books", "outcome", "duplicated");
+        this.invalidCounter = meterRegistry.counter("biblioteca.catalog.import.books", "outcome", "invalid");
+        this.chunkTimer = meterRegistry.timer("biblioteca.catalog.import.chunk");
+        meterRegistry.gauge("biblioteca.catalog.import.pending.chunks", pendingChunks);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+    /**
+     * Writes the whole catalog straight from a database cursor, so memory stays flat
+     * whatever the size of the books table. Returns the number of exported books.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long export(CatalogFormat format, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        long exported = 0;
+        format.writeHeader(writer);
+        try (Stream<BookDto> books = repository.streamAllDto()) {
+            Iterator<BookDto> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                format.write(writer, iterator.next());
+                exported++;
+            }
+        }
+        writer.flush();
+        return exported;
+    }
+
+    /**
+     * Reads the file record by record on the calling thread and hands chunks of valid books to a
+     * writer thread, which saves each chunk in its own transaction through {@link BookService#saveAll(List)}.
+     * The hand-off queue holds at most {@code queue-capacity} chunks, so a slow database blocks the
+     * reader and at most {@code (queue-capacity + 2) * chunk-size} books are in memory.
+     * Chunks committed before a failure stay committed. At most {@code max-concurrent} imports run at
+     * once, the next ones are refused with 503.
+     */
+    @Override
+    public CatalogImportDto importCatalog(CatalogFormat format, InputStream inputStream) throws IOException {
+        if (!imports.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many catalog imports running, try again later");
+        }
+        try {
+            return doImport(format, inputStream);
+        } finally {
+            imports.release();
+        }
+    }
+
+    private CatalogImportDto doImport(CatalogFormat format, InputStream inputStream) throws IOException {
+        long start = System.nanoTime();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        BlockingQueue<List<Books>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicLong created = new AtomicLong();
+        AtomicLong duplicated = new AtomicLong();
+        Future<?> writer = writers.submit(() -> {
+            write(queue, created, duplicated);
+            return null;
+        });
+
+        long read = 0;
+        long invalid = 0;
+        try {
+            List<Books> chunk = new ArrayList<>(chunkSize);
+            String record;
+            boolean first = true;
+            while ((record = format.readRecord(reader, maxRecordLength)) != null) {
+                if (record.trim().isEmpty() || (first && format.isHeader(record))) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                read++;
+                readCounter.increment();
+                Books book = toBook(format, record, read);
+                if (book == null) {
+                    invalid++;
+                    invalidCounter.increment();
+                    continue;
+                }
+                chunk.add(book);
+                if (chunk.size() == chunkSize) {
+                    enqueue(queue, chunk, writer);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                enqueue(queue, chunk, writer);
+            }
+            enqueue(queue, END_OF_FILE, writer);
+        } catch (IOException | RuntimeException e) {
+            writer.cancel(true);
+            throw e;
+        }
+        awaitWriter(writer);
+
+        CatalogImportDto result = CatalogImportDto.builder()
+                .read(read)
+                .created(created.get())
+                .duplicated(duplicated.get())
+                .invalid(invalid)
+                .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .build();
+        log.info(" -----> catalog import finished: {}", result);
+        return result;
+    }
+
+    private Books toBook(CatalogFormat format, String record, long position) {
+        if (record == CatalogFormat.OVERSIZED_RECORD) {
+            log.debug(" -----> record {} skipped: longer than {} characters", position, maxRecordLength);
+            return null;
+        }
+        BookDto bookDto;
+        try {
+            bookDto = format.parse(record);
+        } catch (IllegalArgumentException e) {
+            log.debug(" -----> record {} skipped: {}", position, e.getMessage());
+            return null;
+        }
+        if (bookDto == null || !validator.validate(bookDto).isEmpty()) {
+            log.debug(" -----> record {} skipped: invalid book", position);
+            return null;
+        }
+        return Books.builder().title(bookDto.getTitle()).author(bookDto.getAuthor()).isbn(bookDto.getIsbn()).build();
+    }
+
+    private void write(BlockingQueue<List<Books>> queue, AtomicLong created, AtomicLong duplicated) throws InterruptedException {
+        while (true) {
+            List<Books> chunk = queue.take();
+            if (chunk == END_OF_FILE) {
+                return;
+            }
+            pendingChunks.decrementAndGet();
+            int saved = chunkTimer.record(() -> bookService.saveAll(chunk).size());
+            created.addAndGet(saved);
+            duplicated.addAndGet(chunk.size() - saved);
+            createdCounter.increment(saved);
+            duplicatedCounter.increment(chunk.size() - saved);
+            log.info(" -----> catalog import progress: {} created, {} duplicated", created.get(), duplicated.get());
+        }
+    }
+
+    // blocks while the queue is full, giving up as soon as the writer has failed
+    private void enqueue(BlockingQueue<List<Books>> queue, List<Books> chunk, Future<?> writer) throws IOException {
+        int pending = chunk == END_OF_FILE ? 0 : 1;
+        pendingChunks.addAndGet(pending);
+        try {
+            while (!queue.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (writer.isDone()) {
+                    pendingChunks.addAndGet(-pending);
+                    awaitWriter(writer);
+                    throw new IllegalStateException("Catalog writer stopped before the end of the file");
+                }
+            }
+        } catch (InterruptedException e) {
+            pendingChunks.addAndGet(-pending);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Catalog import interrupted");
+        }
+    }
+
+    private void awaitWriter(Future<?> writer) throws IOException {
+        try {
+            writer.get();
+        } catch (InterruptedException e) {
+            writer.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Catalog import interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
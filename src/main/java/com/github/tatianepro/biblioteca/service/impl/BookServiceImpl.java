@@ -1,32 +1,157 @@
 package com.github.tatianepro.biblioteca.service.impl;
 
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
 import com.github.tatianepro.biblioteca.api.exception.BusinessException;
+import com.github.tatianepro.biblioteca.config.CacheConfig;
 import com.github.tatianepro.biblioteca.model.entity.Books;
 import com.github.tatianepro.biblioteca.model.repository.BookRepository;
 import com.github.tatianepro.biblioteca.service.BookService;
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
+import com.github.tatianepro.biblioteca.service.retry.OptimisticLockRetry;
+import com.github.tatianepro.biblioteca.service.search.BookSearchIndex;
+import com.github.tatianepro.biblioteca.service.search.IsbnBloomFilter;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Optional;
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 public class BookServiceImpl implements BookService {
 
+    // matches spring.jpa.properties.hibernate.jdbc.batch_size
+    static final int BATCH_SIZE = 50;
+    // keeps the isbn 'in' list under the bind parameter limits of the usual databases
+    static final int ISBN_QUERY_SIZE = 1000;
+
     private BookRepository repository;
+    private BookSearchIndex searchIndex;
+    private IsbnBloomFilter isbnFilter;
+    private OptimisticLockRetry optimisticLock;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
 
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository, BookSearchIndex searchIndex, IsbnBloomFilter isbnFilter,
+                           OptimisticLockRetry optimisticLock, EntityManager entityManager,
+                           PlatformTransactionManager transactionManager) {
         this.repository = repository;
+        this.searchIndex = searchIndex;
+        this.isbnFilter = isbnFilter;
+        this.optimisticLock = optimisticLock;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Override
     public Books save(Books book) {
-        if (repository.existsByIsbn(book.getIsbn())) {
+        if (isbnFilter.contains(book.getIsbn(), repository::existsByIsbn)) {
             throw new BusinessException("Isbn já cadastrado.");
         }
-        return this.repository.save(book);
+        Books savedBook;
+        try {
+            savedBook = this.repository.save(book);
+        } catch (DataIntegrityViolationException e) {
+            // the filter missed an isbn registered by another instance, the unique index did not
+            if (repository.existsByIsbn(book.getIsbn())) {
+                isbnFilter.add(book.getIsbn());
+                throw new BusinessException("Isbn já cadastrado.");
+            }
+            throw e;
+        }
+        isbnFilter.add(savedBook.getIsbn());
+        searchIndex.index(savedBook);
+        return savedBook;
+    }
+
+    /**
+     * Saves the books whose isbn is neither registered nor repeated earlier in the list,
+     * with one isbn query per {@value #ISBN_QUERY_SIZE} possibly registered isbns and JDBC batched inserts.
+     * Each chunk of {@value #BATCH_SIZE} books commits in its own transaction, so an isbn registered meanwhile
+     * by another instance only rolls back its chunk, which is saved again without the isbns found registered.
+     * Saved books get their id set, the skipped ones keep a null id.
+     */
+    @Override
+    public List<Books> saveAll(List<Books> books) {
+        Set<String> isbns = new HashSet<>();
+        books.stream()
+                .map(Books::getIsbn)
+                .filter(isbnFilter::mightContain)    // only possible positives go to the database
+                .forEach(isbns::add);
+        Set<String> existingIsbns = findExistingIsbns(new ArrayList<>(isbns));
+
+        List<Books> newBooks = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Books book : books) {
+            if (!existingIsbns.contains(book.getIsbn()) && seen.add(book.getIsbn())) {
+                newBooks.add(book);
+            }
+        }
+        List<Books> savedBooks = new ArrayList<>();
+        for (int from = 0; from < newBooks.size(); from += BATCH_SIZE) {
+            savedBooks.addAll(saveChunk(new ArrayList<>(newBooks.subList(from, Math.min(from + BATCH_SIZE, newBooks.size())))));
+        }
+        return savedBooks;
+    }
+
+    private List<Books> saveChunk(List<Books> chunk) {
+        while (!chunk.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    repository.saveAll(chunk);
+                    repository.flush();
+                    entityManager.clear();  // keeps the persistence context at one batch
+                    afterCommit(() -> chunk.forEach(book -> {
+                        isbnFilter.add(book.getIsbn());
+                        searchIndex.index(book);
+                    }));
+                });
+                return chunk;
+            } catch (DataIntegrityViolationException e) {
+                // the ids and versions were assigned by the rolled back persist
+                chunk.forEach(book -> {
+                    book.setId(null);
+                    book.setVersion(null);
+                });
+                Set<String> registeredIsbns = findExistingIsbns(chunk.stream().map(Books::getIsbn).collect(Collectors.toList()));
+                if (registeredIsbns.isEmpty()) {
+                    throw e;
+                }
+                registeredIsbns.forEach(isbnFilter::add);
+                chunk.removeIf(book -> registeredIsbns.contains(book.getIsbn()));
+            }
+        }
+        return chunk;
+    }
+
+    // a rolled back batch must leave no book with an id behind in the index and the filter
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private Set<String> findExistingIsbns(List<String> isbns) {
+        Set<String> existingIsbns = new HashSet<>();
+        for (int from = 0; from < isbns.size(); from += ISBN_QUERY_SIZE) {
+            existingIsbns.addAll(repository.findExistingIsbns(isbns.subList(from, Math.min(from + ISBN_QUERY_SIZE, isbns.size()))));
+        }
+        return existingIsbns;
     }
 
     @Override
@@ -35,11 +160,22 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
+    public Optional<BookDto> getDtoById(Long id) {
+        return this.repository.findDtoById(id);
+    }
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOK_IDS_BY_ISBN, key = "#book.isbn", condition = "#book?.isbn != null"),
+            @CacheEvict(cacheNames = CacheConfig.ISBN_EXISTS, key = "#book.isbn", condition = "#book?.isbn != null")
+    })
     public void delete(Books book) {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("Book id cannot be null");
         }
         this.repository.delete(book);
+        isbnFilter.remove(book.getIsbn());
+        searchIndex.remove(book.getId());
     }
 
     @Override
@@ -47,24 +183,40 @@ public class BookServiceImpl implements BookService {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("Book id cannot be null");
         }
-        return this.repository.save(book);
+        // on a conflict the edited title and author are applied again on the current version, unless the
+        // other writer changed them too: then the conflict is the client's to resolve (409)
+        Books updatedBook = optimisticLock.update("book", book, repository::save,
+                stale -> repository.findById(stale.getId())
+                        .filter(current -> Objects.equals(current.getTitle(), stale.getStoredTitle())
+                                && Objects.equals(current.getAuthor(), stale.getStoredAuthor()))
+                        .map(current -> {
+                            current.setTitle(stale.getTitle());
+                            current.setAuthor(stale.getAuthor());
+                            return current;
+                        }));
+        searchIndex.index(updatedBook);
+        return updatedBook;
     }
 
     @Override
     public Page<Books> find(Books filter, Pageable pageRequest) {
-        Example<Books> example = Example
-                .of(filter,
-                        ExampleMatcher
-                                    .matching()
-                                    .withIgnoreCase()
-                                    .withIgnoreNullValues()
-                                    .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING)
-        );
-        return repository.findAll(example, pageRequest);
+        return searchIndex.find(filter, pageRequest);
+    }
+
+    /**
+     * The isbn of a book never changes, so the id is only evicted when the book is deleted.
+     */
+    @Override
+    @Cacheable(cacheNames = CacheConfig.BOOK_IDS_BY_ISBN, key = "#isbn", unless = "#result == null")
+    public Optional<Long> getBookIdByIsbn(String isbn) {
+        return repository.findIdByIsbn(isbn);
     }
 
+    /**
+     * A lazy reference to the book, enough to point a new loan at it without selecting the row.
+     */
     @Override
-    public Optional<Books> getBookByIsbn(String isbn) {
-        return repository.findByIsbn(isbn);
+    public Books getReference(Long id) {
+        return repository.getById(id);
     }
 }
@@ -1,34 +1,47 @@
 package com.github.tatianepro.biblioteca.service.impl;
 
 import com.github.tatianepro.biblioteca.service.EmailService;
+import com.github.tatianepro.biblioteca.service.mail.MailDispatcher;
+import com.github.tatianepro.biblioteca.service.mail.MailDispatcherProperties;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 public class EmailServiceImpl implements EmailService {
 
-    private final JavaMailSender javaMailSender;
+    private final MailDispatcher mailDispatcher;
+    private final MailDispatcherProperties properties;
 
     @Value("${application.mail.default-sender}")
     private String sender;
 
+    /**
+     * Queues one message per {@code recipients-per-message} recipients and returns, the
+     * {@link MailDispatcher} sends them in the background. The returned future completes once every
+     * message is sent, or exceptionally when one of them is dropped.
+     */
     @Override
-    public void sendMails(String message, List<String> mailList) {
-
-        String[] mailings = mailList.toArray(new String[mailList.size()]);
-
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
-        mailMessage.setFrom(sender);
-        mailMessage.setSubject("Livro com empréstimo atrasado");
-        mailMessage.setText(message);
-        mailMessage.setTo(mailings);
-
-        javaMailSender.send(mailMessage);
+    public CompletableFuture<Void> sendMails(String message, List<String> mailList) {
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        int batchSize = Math.max(1, properties.getRecipientsPerMessage());
+        for (int from = 0; from < mailList.size(); from += batchSize) {
+            List<String> batch = mailList.subList(from, Math.min(from + batchSize, mailList.size()));
+
+            SimpleMailMessage mailMessage = new SimpleMailMessage();
+            mailMessage.setFrom(sender);
+            mailMessage.setSubject("Livro com empréstimo atrasado");
+            mailMessage.setText(message);
+            mailMessage.setTo(batch.toArray(new String[0]));
+
+            results.add(mailDispatcher.dispatch(mailMessage));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]));
     }
 }
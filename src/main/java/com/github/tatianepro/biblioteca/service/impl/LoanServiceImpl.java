@@ -1,33 +1,69 @@
 package com.github.tatianepro.biblioteca.service.impl;
 
+import com.github.tatianepro.biblioteca.api.dto.LateLoanDto;
 import com.github.tatianepro.biblioteca.api.exception.BusinessException;
+import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
 import com.github.tatianepro.biblioteca.model.entity.Books;
 import com.github.tatianepro.biblioteca.model.entity.Loan;
 import com.github.tatianepro.biblioteca.model.repository.LoanRepository;
 import com.github.tatianepro.biblioteca.service.LoanService;
+import com.github.tatianepro.biblioteca.service.loan.ActiveLoanRegistry;
+import com.github.tatianepro.biblioteca.service.retry.OptimisticLockRetry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 public class LoanServiceImpl implements LoanService {
 
     private LoanRepository loanRepository;
+    private ActiveLoanRegistry activeLoans;
+    private OptimisticLockRetry optimisticLock;
+    private int loanDays;
 
-    public LoanServiceImpl(LoanRepository loanRepository) {
+    public LoanServiceImpl(LoanRepository loanRepository, ActiveLoanRegistry activeLoans,
+                           OptimisticLockRetry optimisticLock, @Value("${application.loans.loan-days:4}") int loanDays) {
         this.loanRepository = loanRepository;
+        this.activeLoans = activeLoans;
+        this.optimisticLock = optimisticLock;
+        this.loanDays = loanDays;
     }
 
     @Override
     public Loan save(Loan loan) {
-        if (loanRepository.existsByBookAndNotReturned(loan.getBook())) {
-            throw new BusinessException("Book already borrowed.");
+        if (loan.getDueDate() == null && loan.getLoanDate() != null) {
+            loan.setDueDate(loan.getLoanDate().plusDays(loanDays));
         }
-        return loanRepository.save(loan);
+        return activeLoans.borrow(loan.getBook().getId(),
+                () -> borrowedByAnotherLoan(loan),
+                () -> open(loan, () -> loanRepository.save(loan)));
+    }
+
+    // the unique index on the open loans refuses a book lent meanwhile through another instance
+    private Loan open(Loan loan, Supplier<Loan> save) {
+        try {
+            return save.get();
+        } catch (DataIntegrityViolationException e) {
+            if (borrowedByAnotherLoan(loan)) {
+                activeLoans.markBorrowed(loan.getBook().getId());
+                throw new BusinessException("Book already borrowed.");
+            }
+            throw e;
+        }
+    }
+
+    private boolean borrowedByAnotherLoan(Loan loan) {
+        return loan.getId() == null
+                ? loanRepository.existsByBookAndNotReturned(loan.getBook())
+                : loanRepository.existsOtherOpenLoan(loan.getBook(), loan.getId());
     }
 
     @Override
@@ -37,7 +73,19 @@ public class LoanServiceImpl implements LoanService {
 
     @Override
     public Loan update(Loan loan) {
-        return loanRepository.save(loan);
+        Long bookId = loan.getBook().getId();
+        // on a conflict the status is applied again only if the other writer left it as this update read it
+        Supplier<Loan> save = () -> optimisticLock.update("loan", loan, loanRepository::save,
+                stale -> loanRepository.findById(stale.getId())
+                        .filter(current -> current.wasOpen() == stale.wasOpen())
+                        .map(current -> {
+                            current.setReturned(stale.getReturned());
+                            return current;
+                        }));
+        return loan.isOpen() && !loan.wasOpen()
+                // a returned loan lent again: the book must be available, as for a new loan
+                ? activeLoans.borrow(bookId, () -> borrowedByAnotherLoan(loan), () -> open(loan, save))
+                : activeLoans.update(bookId, loan.wasOpen() && !loan.isOpen(), save);
     }
 
     @Override
@@ -45,15 +93,42 @@ public class LoanServiceImpl implements LoanService {
         return loanRepository.findByBookIsbnOrCustomer(loan.getBook().getIsbn(), loan.getCustomer(), pageRequest);
     }
 
+    @Override
+    public Page<LoanFilterDto> findDto(Loan loan, Pageable pageRequest) {
+        return loanRepository.findDtoByBookIsbnOrCustomer(loan.getBook().getIsbn(), loan.getCustomer(), pageRequest);
+    }
+
     @Override
     public Page<Loan> getLoansByBook(Books book, Pageable pageRequest) {
         return loanRepository.findByBook(book, pageRequest);
     }
 
     @Override
-    public List<Loan> getAllLateLoans() {
-        final Integer loanDays = 4;
-        LocalDate threeDaysAgo = LocalDate.now().minusDays(loanDays);
-        return loanRepository.findByLoanDateLessThanAndNotReturned(threeDaysAgo);
+    public Slice<Loan> getLoansByBookAfter(Books book, LocalDate afterLoanDate, Long afterId, int size) {
+        Pageable slice = PageRequest.of(0, size);
+        if (afterLoanDate == null || afterId == null) {
+            return loanRepository.findByBookAndLoanDateNotNullOrderByLoanDateDescIdDesc(book, slice);
+        }
+        return loanRepository.findByBookAfter(book, afterLoanDate, afterId, slice);
+    }
+
+    @Override
+    public Slice<LateLoanDto> getLateLoansAfter(LocalDate today, String afterEmail, Long afterId, String toEmail, int size) {
+        String fromEmail = afterEmail == null ? "" : afterEmail;
+        Long fromId = afterId == null ? 0L : afterId;
+        if (toEmail == null) {
+            return loanRepository.findLateLoansAfter(today, fromEmail, fromId, PageRequest.of(0, size));
+        }
+        return loanRepository.findLateLoansBetween(today, fromEmail, fromId, toEmail, PageRequest.of(0, size));
+    }
+
+    @Override
+    public long countLateLoans(LocalDate today) {
+        return loanRepository.countLateLoans(today);
+    }
+
+    @Override
+    public Optional<String> getLateLoanEmailAt(LocalDate today, long offset) {
+        return loanRepository.findLateLoanEmails(today, PageRequest.of((int) offset, 1)).stream().findFirst();
     }
 }
@@ -0,0 +1,153 @@
+package com.github.tatianepro.biblioteca.service.loan;
+
+import com.github.tatianepro.biblioteca.api.exception.BusinessException;
+import com.github.tatianepro.biblioteca.model.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Ids of the books currently borrowed, so a new loan checks availability without a count query.
+ * <p>
+ * Book ids are spread over lock stripes by {@code id % stripes}. Each stripe keeps its ids in a
+ * {@link BitSet} indexed by {@code id / stripes}, which stays compact because the ids come from a
+ * sequence. The availability check and the insert of the loan run under the stripe lock, so two
+ * requests for the same book cannot both pass the check. Loans of books in other stripes do not wait.
+ * <p>
+ * The registry is rebuilt from the open loans on startup. Until then the check asks the database,
+ * still under the stripe lock.
+ * <p>
+ * The registry only sees the loans made and returned through this instance, so it is advisory: a book
+ * it does not hold as borrowed skips the query, a book it holds as borrowed is confirmed by the database
+ * (it may have been returned on another instance). The unique index {@code ux_loan_open_book} is what
+ * keeps two instances from lending the same book, the caller turns its violation into the same error.
+ */
+@Slf4j
+@Component
+public class ActiveLoanRegistry {
+
+    private final LoanRepository repository;
+    private final ReentrantLock[] locks;
+    private final BitSet[] borrowed;
+    private volatile boolean ready;
+
+    public ActiveLoanRegistry(LoanRepository repository,
+                              @Value("${application.loans.lock-stripes:64}") int stripes) {
+        this.repository = repository;
+        this.locks = new ReentrantLock[stripes];
+        this.borrowed = new BitSet[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+            borrowed[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Loads the open loans holding every stripe lock, so no loan made or returned meanwhile is lost.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try (Stream<Long> bookIds = repository.streamBorrowedBookIds()) {
+            for (BitSet bits : borrowed) {
+                bits.clear();
+            }
+            long[] count = {0};
+            bookIds.forEach(bookId -> {
+                borrowed[stripe(bookId)].set(index(bookId));
+                count[0]++;
+            });
+            ready = true;
+            log.info(" -----> active loan registry loaded with {} borrowed books", count[0]);
+        } finally {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    public boolean isBorrowed(long bookId) {
+        int stripe = stripe(bookId);
+        locks[stripe].lock();
+        try {
+            return borrowed[stripe].get(index(bookId));
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Runs {@code insert} only if the book is available and marks it as borrowed, all under the
+     * stripe lock. {@code database} answers the check while the registry is not loaded and confirms
+     * the books the registry holds as borrowed. {@code insert} opens a loan, a new one or a returned
+     * one lent again.
+     */
+    public <T> T borrow(long bookId, BooleanSupplier database, Supplier<T> insert) {
+        int stripe = stripe(bookId);
+        locks[stripe].lock();
+        try {
+            boolean unavailable = (!ready || borrowed[stripe].get(index(bookId))) && database.getAsBoolean();
+            if (unavailable) {
+                borrowed[stripe].set(index(bookId));
+                throw new BusinessException("Book already borrowed.");
+            }
+            T result = insert.get();
+            borrowed[stripe].set(index(bookId));
+            return result;
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Runs {@code update} of a loan that stays open or stays returned, or of an open loan being returned,
+     * and marks the book as available only in the latter case, under the stripe lock. A returned loan
+     * being opened again goes through {@link #borrow}, it needs the availability check.
+     */
+    public <T> T update(long bookId, boolean returning, Supplier<T> update) {
+        int stripe = stripe(bookId);
+        locks[stripe].lock();
+        try {
+            T result = update.get();
+            if (returning) {
+                borrowed[stripe].clear(index(bookId));
+            }
+            return result;
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Marks a book lent by another instance, found when the database refused a second open loan.
+     */
+    public void markBorrowed(long bookId) {
+        int stripe = stripe(bookId);
+        locks[stripe].lock();
+        try {
+            borrowed[stripe].set(index(bookId));
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    private int stripe(long bookId) {
+        return (int) (bookId % locks.length);
+    }
+
+    private int index(long bookId) {
+        return (int) (bookId / locks.length);
+    }
+}
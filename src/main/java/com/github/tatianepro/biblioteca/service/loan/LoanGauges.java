@@ -0,0 +1,50 @@
+package com.github.tatianepro.biblioteca.service.loan;
+
+import com.github.tatianepro.biblioteca.model.repository.LoanRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open and overdue loan gauges, counted in the database so every instance reports the loans made and
+ * returned through any of them.
+ * <p>
+ * A loan is overdue from the day after its stored due date ({@code due_date}, set when the loan is
+ * saved), until it is returned; the count reads the {@code (due_date, returned)} index the late loan run
+ * walks. The counts are refreshed every {@code application.loans.gauge-refresh-millis}, a scrape only
+ * reads the last values.
+ */
+@Component
+public class LoanGauges implements MeterBinder {
+
+    private final LoanRepository repository;
+    private final AtomicLong open = new AtomicLong();
+    private final AtomicLong overdue = new AtomicLong();
+
+    public LoanGauges(LoanRepository repository) {
+        this.repository = repository;
+    }
+
+    @Scheduled(fixedDelayString = "${application.loans.gauge-refresh-millis:60000}")
+    public void refresh() {
+        open.set(repository.countOpenLoans());
+        overdue.set(repository.countLateLoans(LocalDate.now()));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("biblioteca.loans.open", open, AtomicLong::get)
+                .description("Loans not returned yet")
+                .baseUnit("loans")
+                .register(registry);
+        Gauge.builder("biblioteca.loans.overdue", overdue, AtomicLong::get)
+                .description("Open loans past their due date")
+                .baseUnit("loans")
+                .register(registry);
+    }
+}
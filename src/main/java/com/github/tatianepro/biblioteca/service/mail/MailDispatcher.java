@@ -0,0 +1,256 @@
+package com.github.tatianepro.biblioteca.service.mail;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMailMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends mail off the caller thread.
+ * <p>
+ * Messages wait in a bounded queue for a pool of worker threads, each sending through a pooled,
+ * already connected smtp transport. A failed send is retried with exponential backoff up to
+ * {@code max-attempts} times, unless the failure is permanent (a 5xx answer or a message that cannot
+ * be built): that message fails at once. Consecutive transport failures open a circuit breaker that
+ * holds every worker (messages stay queued) until a trial send gets through, so a down smtp server is
+ * not hammered.
+ */
+@Slf4j
+@Component
+public class MailDispatcher implements MeterBinder {
+
+    private static final long POLL_MILLIS = 200;
+
+    // what a failed send tells about the message and the smtp server
+    enum Failure {
+        // the same message fails the same way on every attempt: rejected with 5xx, bad address, not buildable
+        PERMANENT,
+        // the server answered but asked to try later (4xx)
+        TRANSIENT,
+        // no answer: connection refused, dropped or timed out, the only failures the breaker counts
+        TRANSPORT
+    }
+
+    private final JavaMailSenderImpl mailSender;
+    private final MailDispatcherProperties properties;
+    private final BlockingQueue<Envelope> queue;
+    private final SmtpTransportPool transports;
+    private final CircuitBreaker breaker;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public MailDispatcher(JavaMailSenderImpl mailSender, MailDispatcherProperties properties) {
+        this.mailSender = mailSender;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.transports = new SmtpTransportPool(mailSender, properties.getWorkers());
+        this.breaker = new CircuitBreaker(properties.getBreakerFailureThreshold(), properties.getBreakerOpenMillis(),
+                System::currentTimeMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            Thread worker = new Thread(this::work, "mail-dispatcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Gives the workers up to {@code shutdown-timeout-millis} to send what is still queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        long deadline = System.currentTimeMillis() + properties.getShutdownTimeoutMillis();
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            worker.interrupt();
+        }
+        transports.close();
+        List<Envelope> discarded = new ArrayList<>();
+        queue.drainTo(discarded);
+        if (!discarded.isEmpty()) {
+            log.warn(" -----> {} mail messages discarded on shutdown", discarded.size());
+            discarded.forEach(envelope -> envelope.result.completeExceptionally(
+                    new IllegalStateException("Mail dispatcher stopped")));
+        }
+    }
+
+    /**
+     * Queues the message, waiting up to {@code enqueue-timeout-millis} while the queue is full.
+     *
+     * @return completed once the message is sent, or exceptionally once it is dropped
+     */
+    public CompletableFuture<Void> dispatch(SimpleMailMessage message) {
+        Envelope envelope = new Envelope(message);
+        try {
+            if (!queue.offer(envelope, properties.getEnqueueTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new IllegalStateException("Mail queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.incrementAndGet();
+            throw new IllegalStateException("Interrupted while queueing mail", e);
+        }
+        return envelope.result;
+    }
+
+    private void work() {
+        while (running || !queue.isEmpty()) {
+            Envelope envelope = null;
+            try {
+                envelope = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (envelope != null) {
+                    deliver(envelope);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                // whatever ends the delivery, the caller waiting on the future is answered
+                if (envelope != null) {
+                    envelope.result.completeExceptionally(new IllegalStateException("Mail not delivered"));
+                }
+            }
+        }
+    }
+
+    private void deliver(Envelope envelope) throws InterruptedException {
+        SimpleMailMessage message = envelope.message;
+        for (int attempt = 1; ; attempt++) {
+            while (!breaker.allowRequest()) {
+                Thread.sleep(Math.max(1, Math.min(breaker.remainingOpenMillis(), POLL_MILLIS)));
+            }
+            try {
+                send(message);
+                breaker.recordSuccess();
+                sent.incrementAndGet();
+                envelope.result.complete(null);
+                return;
+            } catch (MessagingException | RuntimeException e) {
+                // any failure counts as an attempt, a bad message (e.g. an invalid address) must not kill the worker
+                Failure failure = classify(e);
+                if (failure == Failure.TRANSPORT) {
+                    breaker.recordFailure();
+                } else {
+                    breaker.recordIgnored();
+                }
+                if (failure == Failure.PERMANENT) {
+                    failed.incrementAndGet();
+                    log.error(" -----> mail to {} rejected: {}", StringUtils.arrayToCommaDelimitedString(message.getTo()),
+                            e.getMessage());
+                    envelope.result.completeExceptionally(e);
+                    return;
+                }
+                if (attempt >= properties.getMaxAttempts()) {
+                    failed.incrementAndGet();
+                    log.error(" -----> mail to {} dropped after {} attempts: {}",
+                            StringUtils.arrayToCommaDelimitedString(message.getTo()), attempt, e.getMessage());
+                    envelope.result.completeExceptionally(e);
+                    return;
+                }
+                retried.incrementAndGet();
+                log.warn(" -----> mail attempt {} failed, retrying: {}", attempt, e.getMessage());
+                Thread.sleep(backoff(attempt));
+            }
+        }
+    }
+
+    private void send(SimpleMailMessage message) throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        message.copyTo(new MimeMailMessage(mimeMessage));
+        mimeMessage.saveChanges();
+        Transport transport = transports.borrow();
+        try {
+            transport.sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+        } catch (MessagingException | RuntimeException e) {
+            transports.invalidate(transport);
+            throw e;
+        }
+        transports.release(transport);
+    }
+
+    static Failure classify(Exception e) {
+        if (e instanceof SendFailedException) {
+            int returnCode = returnCode((SendFailedException) e);
+            return returnCode >= 400 && returnCode < 500 ? Failure.TRANSIENT : Failure.PERMANENT;
+        }
+        if (e instanceof AddressException || e instanceof RuntimeException) {
+            return Failure.PERMANENT;
+        }
+        return Failure.TRANSPORT;
+    }
+
+    // smtp reply code of the rejection, or of the first rejected recipient; -1 when the client failed the send itself
+    private static int returnCode(MessagingException e) {
+        for (Exception cause = e; cause != null;
+             cause = cause instanceof MessagingException ? ((MessagingException) cause).getNextException() : null) {
+            if (cause instanceof SMTPSendFailedException) {
+                return ((SMTPSendFailedException) cause).getReturnCode();
+            }
+            if (cause instanceof SMTPAddressFailedException) {
+                return ((SMTPAddressFailedException) cause).getReturnCode();
+            }
+        }
+        return -1;
+    }
+
+    long backoff(int attempt) {
+        long backoff = properties.getInitialBackoffMillis() << Math.min(attempt - 1, 20);
+        return Math.min(backoff, properties.getMaxBackoffMillis());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("biblioteca.mail.messages", sent, AtomicLong::get).tag("result", "sent").register(registry);
+        FunctionCounter.builder("biblioteca.mail.messages", retried, AtomicLong::get).tag("result", "retried").register(registry);
+        FunctionCounter.builder("biblioteca.mail.messages", failed, AtomicLong::get).tag("result", "failed").register(registry);
+        FunctionCounter.builder("biblioteca.mail.messages", rejected, AtomicLong::get).tag("result", "rejected").register(registry);
+        Gauge.builder("biblioteca.mail.queue.size", queue, BlockingQueue::size).register(registry);
+        Gauge.builder("biblioteca.mail.breaker.open", breaker, b -> b.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 while the smtp circuit breaker is open or half open")
+                .register(registry);
+    }
+
+    private static final class Envelope {
+        private final SimpleMailMessage message;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private Envelope(SimpleMailMessage message) {
+            this.message = message;
+        }
+    }
+}
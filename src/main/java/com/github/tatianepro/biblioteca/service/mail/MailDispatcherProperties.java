@@ -0,0 +1,28 @@
+package com.github.tatianepro.biblioteca.service.mail;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.mail.dispatcher")
+public class MailDispatcherProperties {
+
+    // messages waiting for a worker, a full queue blocks the caller up to enqueueTimeoutMillis
+    private int queueCapacity = 1000;
+    private long enqueueTimeoutMillis = 5000;
+    // worker threads, each one holds at most one pooled smtp connection
+    private int workers = 2;
+    private int recipientsPerMessage = 50;
+
+    private int maxAttempts = 5;
+    private long initialBackoffMillis = 500;
+    private long maxBackoffMillis = 30000;
+
+    // consecutive failures that open the circuit, and how long it stays open
+    private int breakerFailureThreshold = 5;
+    private long breakerOpenMillis = 60000;
+
+    private long shutdownTimeoutMillis = 10000;
+}
@@ -0,0 +1,75 @@
+package com.github.tatianepro.biblioteca.service.mail;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Connected smtp transports reused between messages, instead of the connect, authenticate and quit
+ * round trips {@link JavaMailSenderImpl#send} pays for every message. Uses the session, host and
+ * credentials of the {@code spring.mail.*} configuration.
+ */
+@Slf4j
+class SmtpTransportPool implements AutoCloseable {
+
+    private final JavaMailSenderImpl mailSender;
+    private final BlockingQueue<Transport> idle;
+
+    SmtpTransportPool(JavaMailSenderImpl mailSender, int size) {
+        this.mailSender = mailSender;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+    }
+
+    Transport borrow() throws MessagingException {
+        Transport transport;
+        while ((transport = idle.poll()) != null) {
+            if (transport.isConnected()) {
+                return transport;
+            }
+            closeQuietly(transport);
+        }
+        transport = mailSender.getSession().getTransport(protocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return transport;
+    }
+
+    // same fallback as JavaMailSenderImpl#getTransport
+    private String protocol() {
+        if (mailSender.getProtocol() != null) {
+            return mailSender.getProtocol();
+        }
+        String protocol = mailSender.getSession().getProperty("mail.transport.protocol");
+        return protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL;
+    }
+
+    void release(Transport transport) {
+        if (!idle.offer(transport)) {
+            closeQuietly(transport);
+        }
+    }
+
+    // a transport that failed is never reused
+    void invalidate(Transport transport) {
+        closeQuietly(transport);
+    }
+
+    @Override
+    public void close() {
+        Transport transport;
+        while ((transport = idle.poll()) != null) {
+            closeQuietly(transport);
+        }
+    }
+
+    private void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug(" -----> error closing smtp transport: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.tatianepro.biblioteca.service.notice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// rendered notice of one customer, ready for the email outbox
+@Data
+@AllArgsConstructor
+public class LateLoanNotice {
+    private String recipient;
+    private String message;
+}
@@ -0,0 +1,172 @@
+package com.github.tatianepro.biblioteca.service.notice;
+
+import com.github.tatianepro.biblioteca.api.dto.LateLoanDto;
+import com.github.tatianepro.biblioteca.model.entity.EmailOutbox;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Late loan notice of one customer.
+ * <p>
+ * {@code application.mail.lateLoans.template} takes {@code {customer}}, {@code {count}} and {@code {loans}};
+ * {@code {loans}} is replaced by {@code item-template} once per loan, up to {@code max-items} loans, with
+ * {@code {title}} and {@code {days}} overdue. Both templates are parsed once, at startup, into literal and
+ * placeholder segments: rendering only appends segments to a buffer reused by the thread, so a run over
+ * hundreds of thousands of customers allocates little more than the message strings themselves.
+ * <p>
+ * A notice must fit the outbox message column ({@link EmailOutbox#MAX_MESSAGE_LENGTH}): titles are cut at
+ * {@value #MAX_TITLE_LENGTH} characters and the loans that would not fit are left out of the list, the
+ * count still telling how many are late.
+ */
+@Component
+public class LateLoanNoticeTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{(\\w+)}");
+    static final int MAX_TITLE_LENGTH = 100;
+    private static final String CUT = "...";
+
+    private enum Field { CUSTOMER, COUNT, LOANS, TITLE, DAYS }
+
+    private final Segment[] message;
+    private final Segment[] item;
+    private final int maxItems;
+    private final ThreadLocal<StringBuilder> buffer = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    public LateLoanNoticeTemplate(@Value("${application.mail.lateLoans.template}") String template,
+                                  @Value("${application.mail.lateLoans.item-template}") String itemTemplate,
+                                  @Value("${application.mail.lateLoans.max-items:20}") int maxItems) {
+        this.message = compile(template, Field.CUSTOMER, Field.COUNT, Field.LOANS);
+        this.item = compile(itemTemplate, Field.TITLE, Field.DAYS);
+        this.maxItems = maxItems;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * @param loans the late loans of the customer, only the first {@code max-items} are listed
+     * @param count how many loans the customer has late, {@code loans.size()} or more
+     */
+    public String render(String customer, List<LateLoanDto> loans, int count, LocalDate today) {
+        StringBuilder out = buffer.get();
+        out.setLength(0);
+        for (Segment segment : message) {
+            if (segment.field == null) {
+                out.append(segment.literal);
+            } else if (segment.field == Field.CUSTOMER) {
+                out.append(customer == null ? "" : customer);
+            } else if (segment.field == Field.COUNT) {
+                out.append(count);
+            } else {
+                // what follows the list is kept whole, the list gets the room left
+                int limit = EmailOutbox.MAX_MESSAGE_LENGTH - length(message, segment, customer, count);
+                appendLoans(out, loans, today, limit);
+            }
+        }
+        if (out.length() > EmailOutbox.MAX_MESSAGE_LENGTH) {
+            out.setLength(EmailOutbox.MAX_MESSAGE_LENGTH);
+        }
+        return out.toString();
+    }
+
+    private void appendLoans(StringBuilder out, List<LateLoanDto> loans, LocalDate today, int limit) {
+        int listed = Math.min(loans.size(), maxItems);
+        for (int i = 0; i < listed; i++) {
+            int start = out.length();
+            LateLoanDto loan = loans.get(i);
+            for (Segment segment : item) {
+                if (segment.field == null) {
+                    out.append(segment.literal);
+                } else if (segment.field == Field.TITLE) {
+                    appendTitle(out, loan.getBookTitle());
+                } else {
+                    out.append(daysOverdue(loan, today));
+                }
+            }
+            if (out.length() > limit) {
+                out.setLength(start);
+                return;
+            }
+        }
+    }
+
+    private static void appendTitle(StringBuilder out, String title) {
+        if (title == null) {
+            return;
+        }
+        if (title.length() <= MAX_TITLE_LENGTH) {
+            out.append(title);
+        } else {
+            out.append(title, 0, MAX_TITLE_LENGTH - CUT.length()).append(CUT);
+        }
+    }
+
+    // length of the message segments after the loans list
+    private static int length(Segment[] segments, Segment loans, String customer, int count) {
+        int length = 0;
+        boolean after = false;
+        for (Segment segment : segments) {
+            if (segment == loans) {
+                after = true;
+            } else if (after && segment.field == null) {
+                length += segment.literal.length();
+            } else if (after && segment.field == Field.CUSTOMER) {
+                length += customer == null ? 0 : customer.length();
+            } else if (after && segment.field == Field.COUNT) {
+                length += String.valueOf(count).length();
+            }
+        }
+        return length;
+    }
+
+    private static long daysOverdue(LateLoanDto loan, LocalDate today) {
+        LocalDate due = loan.getDueDate() != null ? loan.getDueDate() : loan.getLoanDate();
+        return due == null ? 0 : Math.max(0, ChronoUnit.DAYS.between(due, today));
+    }
+
+    private static Segment[] compile(String template, Field... allowed) {
+        List<Segment> segments = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        int from = 0;
+        while (matcher.find()) {
+            Field field = field(matcher.group(1), template, allowed);
+            if (matcher.start() > from) {
+                segments.add(new Segment(template.substring(from, matcher.start()), null));
+            }
+            segments.add(new Segment(null, field));
+            from = matcher.end();
+        }
+        if (from < template.length()) {
+            segments.add(new Segment(template.substring(from), null));
+        }
+        return segments.toArray(new Segment[0]);
+    }
+
+    private static Field field(String name, String template, Field... allowed) {
+        for (Field field : allowed) {
+            if (field.name().equals(name.toUpperCase(Locale.ROOT))) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown placeholder {" + name + "} in late loan template: " + template);
+    }
+
+    private static final class Segment {
+        private final String literal;
+        private final Field field;
+
+        private Segment(String literal, Field field) {
+            this.literal = literal;
+            this.field = field;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.tatianepro.biblioteca.service.outbox;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.mail.outbox")
+public class EmailOutboxProperties {
+
+    // worker threads, each one drains the rows with mod(id, workers) == its partition
+    private int workers = 4;
+    private int batchSize = 100;
+    private long pollMillis = 1000;
+
+    // a failed batch goes back to pending for another try after retryDelayMillis, up to maxAttempts
+    private int maxAttempts = 5;
+    private long retryDelayMillis = 60000;
+
+    // how long a worker waits for the dispatcher, and after how long a claim is considered abandoned
+    private long sendTimeoutMillis = 300000;
+    private long leaseMillis = 600000;
+
+    private long shutdownTimeoutMillis = 10000;
+}
@@ -0,0 +1,185 @@
+package com.github.tatianepro.biblioteca.service.outbox;
+
+import com.github.tatianepro.biblioteca.model.entity.EmailOutbox;
+import com.github.tatianepro.biblioteca.model.repository.EmailOutboxRepository;
+import com.github.tatianepro.biblioteca.service.EmailService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Pool of threads draining the email outbox.
+ * <p>
+ * Worker {@code i} of {@code n} only looks at the rows with {@code mod(id, n) == i}, so the workers of
+ * one instance never compete for the same rows and throughput grows with {@code workers}. A worker
+ * claims a batch with a conditional update ({@code status = PENDING -> PROCESSING}, tagged with a claim
+ * token), which is what makes instances sharing the table skip each other's rows the way
+ * {@code for update skip locked} would. Claimed rows are sent through the {@link EmailService}, then
+ * marked sent, or released for a later attempt. Claims older than {@code lease-millis} belong to a
+ * crashed instance and go back to pending, so a restart resumes where the previous run stopped.
+ * Delivery is at least once: a crash between sending and marking the batch sends it again.
+ */
+@Slf4j
+@Component
+public class EmailOutboxWorkers implements MeterBinder {
+
+    private final EmailOutboxRepository repository;
+    private final EmailService emailService;
+    private final EmailOutboxProperties properties;
+    private final String instance = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong claims = new AtomicLong();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public EmailOutboxWorkers(EmailOutboxRepository repository, EmailService emailService, EmailOutboxProperties properties) {
+        this.repository = repository;
+        this.emailService = emailService;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            int partition = i;
+            Thread worker = new Thread(() -> work(partition), "email-outbox-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Lets the workers finish the batch in hand, rows they did not get to stay pending for the next start.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        long deadline = System.currentTimeMillis() + properties.getShutdownTimeoutMillis();
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            worker.interrupt();
+        }
+        workers.clear();
+    }
+
+    private void work(int partition) {
+        long nextRequeue = 0;
+        while (running) {
+            try {
+                if (partition == 0 && System.currentTimeMillis() >= nextRequeue) {
+                    requeueExpired();
+                    nextRequeue = System.currentTimeMillis() + properties.getLeaseMillis() / 2;
+                }
+                if (processBatch(partition) == 0) {
+                    Thread.sleep(properties.getPollMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error(" -----> email outbox worker {} failed: {}", partition, e.getMessage());
+                try {
+                    Thread.sleep(properties.getPollMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Claims, sends and settles one batch of the partition.
+     *
+     * @return how many rows were claimed, 0 when the partition has nothing ready
+     */
+    int processBatch(int partition) throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = repository.findClaimableIds(EmailOutbox.Status.PENDING, now, partition,
+                Math.max(1, properties.getWorkers()), PageRequest.of(0, properties.getBatchSize()));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String owner = instance + "-" + partition + "-" + claims.incrementAndGet();
+        if (repository.claim(ids, owner, EmailOutbox.Status.PENDING, EmailOutbox.Status.PROCESSING, now) == 0) {
+            return 0;
+        }
+        List<EmailOutbox> claimed = repository.findByClaimedByAndStatus(owner, EmailOutbox.Status.PROCESSING);
+        Map<String, List<EmailOutbox>> byMessage = claimed.stream()
+                .collect(Collectors.groupingBy(EmailOutbox::getMessage, LinkedHashMap::new, Collectors.toList()));
+        for (List<EmailOutbox> notices : byMessage.values()) {
+            send(owner, notices);
+        }
+        return claimed.size();
+    }
+
+    private void send(String owner, List<EmailOutbox> notices) throws InterruptedException {
+        List<Long> ids = notices.stream().map(EmailOutbox::getId).collect(Collectors.toList());
+        List<String> recipients = notices.stream().map(EmailOutbox::getRecipient).collect(Collectors.toList());
+        try {
+            emailService.sendMails(notices.get(0).getMessage(), recipients)
+                    .get(properties.getSendTimeoutMillis(), TimeUnit.MILLISECONDS);
+            repository.markSent(ids, owner, EmailOutbox.Status.SENT, LocalDateTime.now());
+            sent.addAndGet(ids.size());
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            log.warn(" -----> {} outbox emails not sent: {}", ids.size(), e.getMessage());
+            release(owner, notices);
+        } catch (InterruptedException e) {
+            release(owner, notices);
+            throw e;
+        }
+    }
+
+    private void release(String owner, List<EmailOutbox> notices) {
+        Map<Boolean, List<Long>> exhausted = notices.stream()
+                .collect(Collectors.partitioningBy(notice -> notice.getAttempts() + 1 >= properties.getMaxAttempts(),
+                        Collectors.mapping(EmailOutbox::getId, Collectors.toList())));
+        if (!exhausted.get(true).isEmpty()) {
+            repository.release(exhausted.get(true), owner, EmailOutbox.Status.FAILED, LocalDateTime.now());
+            failed.addAndGet(exhausted.get(true).size());
+        }
+        if (!exhausted.get(false).isEmpty()) {
+            repository.release(exhausted.get(false), owner, EmailOutbox.Status.PENDING,
+                    LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(properties.getRetryDelayMillis())));
+            retried.addAndGet(exhausted.get(false).size());
+        }
+    }
+
+    int requeueExpired() {
+        int requeued = repository.requeueExpired(EmailOutbox.Status.PROCESSING, EmailOutbox.Status.PENDING,
+                LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(properties.getLeaseMillis())));
+        if (requeued > 0) {
+            log.warn(" -----> {} abandoned outbox emails back to pending", requeued);
+        }
+        return requeued;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("biblioteca.mail.outbox.emails", sent, AtomicLong::get).tag("result", "sent").register(registry);
+        FunctionCounter.builder("biblioteca.mail.outbox.emails", retried, AtomicLong::get).tag("result", "retried").register(registry);
+        FunctionCounter.builder("biblioteca.mail.outbox.emails", failed, AtomicLong::get).tag("result", "failed").register(registry);
+        Gauge.builder("biblioteca.mail.outbox.pending", repository, r -> r.countByStatus(EmailOutbox.Status.PENDING))
+                .description("outbox emails waiting for a worker")
+                .register(registry);
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.tatianepro.biblioteca.service.outbox;
+
+import com.github.tatianepro.biblioteca.model.entity.EmailOutbox;
+import com.github.tatianepro.biblioteca.model.repository.EmailOutboxRepository;
+import com.github.tatianepro.biblioteca.service.notice.LateLoanNotice;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the late loan notices to the outbox table instead of mailing them, the
+ * {@link EmailOutboxWorkers} send them afterwards.
+ * <p>
+ * A chunk is written in one transaction and a customer gets at most one notice per day, so rerunning
+ * the job after a crash only writes the notices that were still missing.
+ */
+@Component
+public class EmailOutboxWriter {
+
+    private final EmailOutboxRepository repository;
+
+    public EmailOutboxWriter(EmailOutboxRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * @return how many notices were written, recipients already noticed on {@code noticeDate} are skipped
+     */
+    @Transactional
+    public int enqueue(List<LateLoanNotice> notices, LocalDate noticeDate) {
+        if (notices.isEmpty()) {
+            return 0;
+        }
+        Set<String> enqueued = new HashSet<>(repository.findEnqueuedRecipients(noticeDate,
+                notices.stream().map(LateLoanNotice::getRecipient).collect(Collectors.toList())));
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutbox> rows = notices.stream()
+                .filter(notice -> notice.getRecipient() != null && enqueued.add(notice.getRecipient()))
+                .map(notice -> EmailOutbox.builder()
+                        .recipient(notice.getRecipient())
+                        .message(notice.getMessage())
+                        .noticeDate(noticeDate)
+                        .status(EmailOutbox.Status.PENDING)
+                        .availableAt(now)
+                        .build())
+                .collect(Collectors.toList());
+        repository.saveAll(rows);
+        return rows.size();
+    }
+}
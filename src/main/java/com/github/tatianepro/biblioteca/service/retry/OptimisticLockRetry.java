@@ -0,0 +1,86 @@
+package com.github.tatianepro.biblioteca.service.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded retry of read-modify-save updates of versioned entities.
+ * <p>
+ * When the save hits a newer version, the change is applied again on top of a fresh copy of the
+ * entity and saved again, at most {@code max-attempts} times with a short random backoff. The save
+ * must run in its own transaction: after the rollback the persistence context is cleared, so the
+ * fresh copy really comes from the database. Gives up with the last
+ * {@link ObjectOptimisticLockingFailureException}, which the API answers with 409.
+ */
+@Slf4j
+@Component
+public class OptimisticLockRetry {
+
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public OptimisticLockRetry(MeterRegistry meterRegistry,
+                               @Value("${application.optimistic-lock.max-attempts:3}") int maxAttempts,
+                               @Value("${application.optimistic-lock.backoff-millis:20}") long backoffMillis) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Saves {@code entity}; on a version conflict, {@code reapply} must read the current entity,
+     * apply the same change to it and return it, or return empty when it no longer exists or when
+     * the other writer changed what this update changes, which gives up at once.
+     */
+    public <T> T update(String entityName, T entity, UnaryOperator<T> save, Function<T, Optional<T>> reapply) {
+        T attempt = entity;
+        for (int i = 1; ; i++) {
+            try {
+                return save.apply(attempt);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                counter("biblioteca.optimistic.lock.conflicts", entityName).increment();
+                if (i >= maxAttempts) {
+                    counter("biblioteca.optimistic.lock.exhausted", entityName).increment();
+                    log.warn(" -----> {} update gave up after {} conflicts", entityName, i);
+                    throw e;
+                }
+                Optional<T> fresh = reapply.apply(attempt);
+                if (!fresh.isPresent()) {
+                    throw e;
+                }
+                attempt = fresh.get();
+                counter("biblioteca.optimistic.lock.retries", entityName).increment();
+                backoff(i);
+            }
+        }
+    }
+
+    private Counter counter(String name, String entityName) {
+        return counters.computeIfAbsent(name + ':' + entityName,
+                key -> meterRegistry.counter(name, "entity", entityName));
+    }
+
+    private void backoff(int attempt) {
+        if (backoffMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMillis * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.github.tatianepro.biblioteca.service.search;
+
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index over the title, author and isbn of the catalog.
+ * <p>
+ * Loaded from the database on the first search and kept up to date by
+ * {@link #index(Books)} and {@link #remove(Long)}, so searches never scan the books table again.
+ * The books written through the other instances are picked up by {@link #refresh()}, every
+ * {@code application.search.refresh-millis}: it reads the books updated since the previous refresh, less
+ * {@code refresh-overlap-millis} for the transactions still running then and for clock skew, and drops
+ * the books deleted elsewhere when the database holds fewer books than the index. A copy older than
+ * the indexed version never replaces it.
+ * Candidates come from intersecting the trigram posting lists of each filled field and are then
+ * verified with a case insensitive {@code contains}, the same semantics as the former
+ * {@code ExampleMatcher.StringMatcher.CONTAINING} query, fragments in the middle of words included.
+ * Results are ranked by the title and author tokens: exact words first, then word prefixes.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+    private static final int EXACT_TOKEN_SCORE = 2;
+    private static final int PREFIX_TOKEN_SCORE = 1;
+
+    private final BookRepository repository;
+    private final Duration refreshOverlap;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, BookDocument> documents = new HashMap<>();
+    private final TrigramIndex titleTrigrams = new TrigramIndex();
+    private final TrigramIndex authorTrigrams = new TrigramIndex();
+    private final TrigramIndex isbnTrigrams = new TrigramIndex();
+    private volatile boolean loaded;
+    // start of the last load or refresh, the next refresh reads from there (less the overlap)
+    private LocalDateTime refreshedAt;
+
+    public BookSearchIndex(BookRepository repository,
+                           @Value("${application.search.refresh-overlap-millis:60000}") long refreshOverlapMillis) {
+        this.repository = repository;
+        this.refreshOverlap = Duration.ofMillis(refreshOverlapMillis);
+    }
+
+    public Page<Books> find(Books filter, Pageable pageRequest) {
+        ensureLoaded();
+        List<BookDocument> matches;
+        lock.readLock().lock();
+        try {
+            matches = match(filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(comparator(pageRequest.getSort(), filter));
+
+        int from = (int) Math.min(pageRequest.getOffset(), matches.size());
+        int to = Math.min(from + pageRequest.getPageSize(), matches.size());
+        List<Books> content = matches.subList(from, to)
+                .stream()
+                .map(BookDocument::toBook)
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, pageRequest, matches.size());
+    }
+
+    public void index(Books book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;     // the cold load will read it from the database
+            }
+            add(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        if (id == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            unindex(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.search.refresh-millis:10000}")
+    public void refresh() {
+        if (!loaded) {
+            return;     // nothing to refresh, the cold load reads everything
+        }
+        LocalDateTime start = LocalDateTime.now();
+        List<Books> updated = repository.findUpdatedSince(refreshedAt.minus(refreshOverlap));
+        long count = repository.count();
+        lock.writeLock().lock();
+        try {
+            updated.forEach(this::add);
+            if (documents.size() > count) {
+                Set<Long> ids = new HashSet<>(repository.findAllIds());
+                new ArrayList<>(documents.keySet()).stream()
+                        .filter(id -> !ids.contains(id))
+                        .forEach(this::unindex);
+            }
+            refreshedAt = start;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            refreshedAt = LocalDateTime.now();
+            List<Books> books = repository.findAll();
+            books.forEach(this::add);
+            loaded = true;
+            log.info(" -----> book search index loaded with {} books", books.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Books book) {
+        BookDocument indexed = documents.get(book.getId());
+        if (indexed != null && indexed.version != null && book.getVersion() != null
+                && book.getVersion() < indexed.version) {
+            return;     // read before an update already indexed
+        }
+        unindex(book.getId());
+        BookDocument document = new BookDocument(book);
+        documents.put(document.id, document);
+        titleTrigrams.add(document.id, document.title);
+        authorTrigrams.add(document.id, document.author);
+        isbnTrigrams.add(document.id, document.isbn);
+    }
+
+    private void unindex(Long id) {
+        BookDocument old = documents.remove(id);
+        if (old == null) {
+            return;
+        }
+        titleTrigrams.remove(id, old.title);
+        authorTrigrams.remove(id, old.author);
+        isbnTrigrams.remove(id, old.isbn);
+    }
+
+    private List<BookDocument> match(Books filter) {
+        Set<Long> candidates = null;
+        if (filter.getId() != null) {
+            candidates = documents.containsKey(filter.getId())
+                    ? new HashSet<>(Collections.singleton(filter.getId()))
+                    : new HashSet<>();
+        }
+        candidates = titleTrigrams.intersect(candidates, filter.getTitle());
+        candidates = authorTrigrams.intersect(candidates, filter.getAuthor());
+        candidates = isbnTrigrams.intersect(candidates, filter.getIsbn());
+
+        Collection<Long> ids = candidates == null ? documents.keySet() : candidates;
+        List<BookDocument> matches = new ArrayList<>();
+        for (Long id : ids) {
+            BookDocument document = documents.get(id);
+            if (document.matches(filter)) {
+                matches.add(document);
+            }
+        }
+        return matches;
+    }
+
+    private static Comparator<BookDocument> comparator(Sort sort, Books filter) {
+        if (sort.isUnsorted()) {
+            List<String> titleTokens = filter.getTitle() == null ? Collections.emptyList() : tokenize(filter.getTitle());
+            List<String> authorTokens = filter.getAuthor() == null ? Collections.emptyList() : tokenize(filter.getAuthor());
+            Map<Long, Integer> scores = new HashMap<>();
+            Function<BookDocument, Integer> score = document -> scores.computeIfAbsent(document.id,
+                    id -> score(document.titleTokens, titleTokens) + score(document.authorTokens, authorTokens));
+            return Comparator.comparing(score).reversed().thenComparing(document -> document.id);
+        }
+        Comparator<BookDocument> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<BookDocument> byProperty = property(order.getProperty());
+            if (order.isDescending()) {
+                byProperty = byProperty.reversed();
+            }
+            comparator = comparator == null ? byProperty : comparator.thenComparing(byProperty);
+        }
+        return comparator.thenComparing(document -> document.id);
+    }
+
+    private static Comparator<BookDocument> property(String name) {
+        Comparator<String> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+        switch (name) {
+            case "title":
+                return Comparator.comparing(document -> document.title, nullsFirst);
+            case "author":
+                return Comparator.comparing(document -> document.author, nullsFirst);
+            case "isbn":
+                return Comparator.comparing(document -> document.isbn, nullsFirst);
+            default:
+                return Comparator.comparing(document -> document.id);
+        }
+    }
+
+    private static int score(Set<String> documentTokens, List<String> queryTokens) {
+        int score = 0;
+        for (String queryToken : queryTokens) {
+            if (documentTokens.contains(queryToken)) {
+                score += EXACT_TOKEN_SCORE;
+            } else if (documentTokens.stream().anyMatch(token -> token.startsWith(queryToken))) {
+                score += PREFIX_TOKEN_SCORE;
+            }
+        }
+        return score;
+    }
+
+    static List<String> tokenize(String value) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : value.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean containsIgnoreCase(String value, String fragment) {
+        return fragment == null
+                || (value != null && value.toLowerCase(Locale.ROOT).contains(fragment.toLowerCase(Locale.ROOT)));
+    }
+
+    private static final class BookDocument {
+        private final Long id;
+        private final Long version;
+        private final String title;
+        private final String author;
+        private final String isbn;
+        private final Set<String> titleTokens;
+        private final Set<String> authorTokens;
+
+        private BookDocument(Books book) {
+            this.id = book.getId();
+            this.version = book.getVersion();
+            this.title = book.getTitle();
+            this.author = book.getAuthor();
+            this.isbn = book.getIsbn();
+            this.titleTokens = title == null ? Collections.emptySet() : new HashSet<>(tokenize(title));
+            this.authorTokens = author == null ? Collections.emptySet() : new HashSet<>(tokenize(author));
+        }
+
+        private boolean matches(Books filter) {
+            return containsIgnoreCase(title, filter.getTitle())
+                    && containsIgnoreCase(author, filter.getAuthor())
+                    && containsIgnoreCase(isbn, filter.getIsbn());
+        }
+
+        private Books toBook() {
+            return Books.builder().id(id).version(version).title(title).author(author).isbn(isbn).build();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.tatianepro.biblioteca.service.search;
+
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Counting Bloom filter over the registered isbns, so the uniqueness check of a new book skips the
+ * database when the isbn is certainly new.
+ * <p>
+ * Each slot is a 4 bit counter (16 per {@code long}) updated with CAS, so books can be removed as
+ * well as added. A counter that reaches 15 is never decremented again: it may keep an old isbn as a
+ * possible positive but never hides a registered one. Until the startup rebuild completes every
+ * isbn is a possible positive and removals are ignored, so the filter never answers a false negative.
+ * <p>
+ * The filter is advisory: it only learns the isbns added through this instance after the rebuild, so an
+ * isbn registered by another replica is a false negative here. The unique index {@code ux_books_isbn}
+ * stays the guarantee, {@code BookServiceImpl} turns its violation into the same "Isbn já cadastrado.".
+ */
+@Slf4j
+@Component
+public class IsbnBloomFilter implements MeterBinder {
+
+    private static final int COUNTERS_PER_WORD = 16;
+    private static final long MAX_COUNT = 15;
+
+    private final BookRepository repository;
+    private final AtomicLongArray counters;
+    private final int slots;
+    private final int hashes;
+    private volatile boolean ready;
+
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong negatives = new AtomicLong();
+    private final AtomicLong positives = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    public IsbnBloomFilter(BookRepository repository,
+                           @Value("${application.isbn-filter.expected-insertions:1000000}") int expectedInsertions,
+                           @Value("${application.isbn-filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+        this.repository = repository;
+        long optimalSlots = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.slots = (int) Math.max(COUNTERS_PER_WORD, Math.min(optimalSlots, Integer.MAX_VALUE - COUNTERS_PER_WORD));
+        this.hashes = Math.max(1, (int) Math.round((double) slots / expectedInsertions * Math.log(2)));
+        this.counters = new AtomicLongArray((slots + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+    }
+
+    /**
+     * Reloads the filter from the database, starting from empty counters so a second rebuild does not
+     * count the registered isbns twice. While it runs every isbn is a possible positive again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        ready = false;
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        size.set(0);
+        try (Stream<String> isbns = repository.streamAllIsbns()) {
+            isbns.forEach(this::add);
+        }
+        ready = true;
+        log.info(" -----> isbn filter loaded with {} isbns in {} ms ({} slots, {} hashes)",
+                size.get(), System.currentTimeMillis() - start, slots, hashes);
+    }
+
+    /**
+     * Answers whether the isbn is registered, asking {@code database} only when the filter
+     * holds it as a possible positive.
+     */
+    public boolean contains(String isbn, Predicate<String> database) {
+        if (!mightContain(isbn)) {
+            negatives.incrementAndGet();
+            return false;
+        }
+        positives.incrementAndGet();
+        boolean registered = database.test(isbn);
+        if (!registered && ready) {
+            falsePositives.incrementAndGet();
+        }
+        return registered;
+    }
+
+    public boolean mightContain(String isbn) {
+        if (!ready || isbn == null) {
+            return true;
+        }
+        long hash1 = hash(isbn, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(isbn, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashes; i++) {
+            if (count(slot(hash1, hash2, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(String isbn) {
+        if (isbn == null) {
+            return;
+        }
+        long hash1 = hash(isbn, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(isbn, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashes; i++) {
+            update(slot(hash1, hash2, i), 1);
+        }
+        size.incrementAndGet();
+    }
+
+    public void remove(String isbn) {
+        if (!ready || isbn == null || !mightContain(isbn)) {
+            return;     // the rebuild may not have counted it yet, a stale positive is harmless
+        }
+        long hash1 = hash(isbn, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(isbn, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashes; i++) {
+            update(slot(hash1, hash2, i), -1);
+        }
+        size.decrementAndGet();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("biblioteca.isbn.filter.checks", negatives, AtomicLong::get)
+                .tag("result", "negative")
+                .description("Isbn checks answered by the filter alone")
+                .register(registry);
+        FunctionCounter.builder("biblioteca.isbn.filter.checks", positives, AtomicLong::get)
+                .tag("result", "positive")
+                .description("Isbn checks that fell back to the database")
+                .register(registry);
+        FunctionCounter.builder("biblioteca.isbn.filter.checks", falsePositives, AtomicLong::get)
+                .tag("result", "false_positive")
+                .description("Fallbacks to the database that did not find the isbn")
+                .register(registry);
+        Gauge.builder("biblioteca.isbn.filter.false.positive.rate", this, IsbnBloomFilter::observedFalsePositiveRate)
+                .description("False positives over the checks of unregistered isbns")
+                .register(registry);
+        Gauge.builder("biblioteca.isbn.filter.expected.false.positive.rate", this, IsbnBloomFilter::expectedFalsePositiveRate)
+                .description("Theoretical false positive probability for the current number of isbns")
+                .register(registry);
+        Gauge.builder("biblioteca.isbn.filter.size", size, AtomicLong::get)
+                .register(registry);
+    }
+
+    double observedFalsePositiveRate() {
+        long unregistered = negatives.get() + falsePositives.get();
+        return unregistered == 0 ? 0 : (double) falsePositives.get() / unregistered;
+    }
+
+    double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * size.get() / slots), hashes);
+    }
+
+    private int slot(long hash1, long hash2, int i) {
+        return (int) Math.floorMod(hash1 + i * hash2, (long) slots);
+    }
+
+    private long count(int slot) {
+        return (counters.get(slot / COUNTERS_PER_WORD) >>> shift(slot)) & MAX_COUNT;
+    }
+
+    private void update(int slot, int delta) {
+        int word = slot / COUNTERS_PER_WORD;
+        int shift = shift(slot);
+        while (true) {
+            long current = counters.get(word);
+            long count = (current >>> shift) & MAX_COUNT;
+            if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+                return;     // saturated counters stay saturated
+            }
+            if (counters.compareAndSet(word, current, current + ((long) delta << shift))) {
+                return;
+            }
+        }
+    }
+
+    private static int shift(int slot) {
+        return (slot % COUNTERS_PER_WORD) * 4;
+    }
+
+    // FNV-1a over the chars finished with the murmur3 64 bit mix
+    private static long hash(String value, long seed) {
+        long hash = seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
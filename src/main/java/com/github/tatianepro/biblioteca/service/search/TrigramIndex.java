@@ -0,0 +1,68 @@
+package com.github.tatianepro.biblioteca.service.search;
+
+import java.util.*;
+
+/**
+ * Posting lists of the lower cased trigrams of one field.
+ * Every substring of 3 or more characters of a value shares all of its trigrams,
+ * so intersecting them narrows a {@code contains} search to a few candidates.
+ * Not thread safe, guarded by {@link BookSearchIndex}.
+ */
+final class TrigramIndex {
+
+    static final int GRAM = 3;
+
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+
+    void add(Long id, String value) {
+        trigrams(value).forEach(trigram -> postings.computeIfAbsent(trigram, t -> new HashSet<>()).add(id));
+    }
+
+    void remove(Long id, String value) {
+        for (String trigram : trigrams(value)) {
+            Set<Long> ids = postings.get(trigram);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    /**
+     * Narrows {@code candidates} (null meaning every document) to the ids holding all trigrams
+     * of {@code fragment}. Fragments shorter than a trigram cannot narrow and return them untouched.
+     */
+    Set<Long> intersect(Set<Long> candidates, String fragment) {
+        if (fragment == null || fragment.length() < GRAM) {
+            return candidates;
+        }
+        List<Set<Long>> postingLists = new ArrayList<>();
+        for (String trigram : trigrams(fragment)) {
+            postingLists.add(postings.getOrDefault(trigram, Collections.emptySet()));
+        }
+        // smallest posting list first keeps the intersection proportional to the rarest trigram
+        postingLists.sort(Comparator.comparingInt(Set::size));
+        for (Set<Long> postingList : postingLists) {
+            if (candidates == null) {
+                candidates = new HashSet<>(postingList);
+            } else {
+                candidates.retainAll(postingList);
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    static Set<String> trigrams(String value) {
+        if (value == null || value.length() < GRAM) {
+            return Collections.emptySet();
+        }
+        String lowerCase = value.toLowerCase(Locale.ROOT);
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + GRAM <= lowerCase.length(); i++) {
+            trigrams.add(lowerCase.substring(i, i + GRAM));
+        }
+        return trigrams;
+    }
+}
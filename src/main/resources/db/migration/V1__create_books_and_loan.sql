@@ -0,0 +1,23 @@
+-- schema formerly generated by hibernate (ddl-auto) from the Books and Loan entities
+
+create sequence books_seq start with 1 increment by 50;
+
+create table books (
+    id      bigint       not null,
+    title   varchar(255),
+    author  varchar(255),
+    isbn    varchar(255),
+    version bigint,
+    constraint pk_books primary key (id)
+);
+
+create table loan (
+    id             bigint generated by default as identity,
+    customer       varchar(100),
+    customer_email varchar(255),
+    id_book        bigint,
+    loan_date      date,
+    returned       boolean,
+    version        bigint,
+    constraint pk_loan primary key (id)
+);
@@ -0,0 +1,15 @@
+-- BookRepository.existsByIsbn / findByIsbn / findExistingIsbns, and the isbn uniqueness rule
+create unique index ux_books_isbn on books (isbn);
+
+-- LoanRepository.existsByBookAndNotReturned and the loan history of a book
+create index ix_loan_book_returned on loan (id_book, returned);
+
+-- H2 still adds its own id_book index for the foreign key, databases that do not index foreign keys
+-- (postgres) rely on ix_loan_book_returned
+alter table loan add constraint fk_loan_book foreign key (id_book) references books (id);
+
+-- LoanRepository.findByLoanDateLessThanAndNotReturned (late loans)
+create index ix_loan_date_returned on loan (loan_date, returned);
+
+-- LoanRepository.findByBookIsbnOrCustomer, customer side of the 'or'
+create index ix_loan_customer on loan (customer);
@@ -0,0 +1,4 @@
+-- due date stored with the loan instead of derived from loan_date by every query
+alter table loan add column due_date date;
+
+update loan set due_date = dateadd('DAY', 4, loan_date) where loan_date is not null;
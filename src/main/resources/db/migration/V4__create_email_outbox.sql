@@ -0,0 +1,25 @@
+-- late loan notices written next to the loan data and sent by the outbox workers
+create table email_outbox (
+    id           bigint generated by default as identity,
+    loan_id      bigint        not null,
+    recipient    varchar(255)  not null,
+    message      varchar(1000) not null,
+    notice_date  date          not null,
+    status       varchar(16)   not null,
+    attempts     integer       not null,
+    available_at timestamp     not null,
+    claimed_by   varchar(64),
+    claimed_at   timestamp,
+    sent_at      timestamp,
+    constraint pk_email_outbox primary key (id),
+    constraint fk_email_outbox_loan foreign key (loan_id) references loan (id)
+);
+
+-- one notice per loan and day, a rerun of the job after a crash does not enqueue it twice
+create unique index ux_email_outbox_loan_notice on email_outbox (loan_id, notice_date);
+
+-- EmailOutboxRepository.findClaimableIds / requeueExpired
+create index ix_email_outbox_status_id on email_outbox (status, id);
+
+-- EmailOutboxRepository.findByClaimedByAndStatus
+create index ix_email_outbox_claimed_by on email_outbox (claimed_by);
@@ -0,0 +1,10 @@
+-- late loan notices are now one per customer and day, listing every late loan of the customer
+alter table email_outbox drop constraint fk_email_outbox_loan;
+drop index ux_email_outbox_loan_notice;
+alter table email_outbox drop column loan_id;
+alter table email_outbox alter column message set data type varchar(4000);
+
+create unique index ux_email_outbox_recipient_notice on email_outbox (recipient, notice_date);
+
+-- LoanRepository.findLateLoansAfter walks the late loans by (customer_email, id)
+create index ix_loan_email_id on loan (customer_email, id);
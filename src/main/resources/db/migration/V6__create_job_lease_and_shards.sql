@@ -0,0 +1,30 @@
+-- one row per clustered job: the node holding the lease runs the job, the others skip the tick
+create table job_lease (
+    name           varchar(64) not null,
+    owner          varchar(64),
+    locked_until   timestamp,
+    last_completed date,
+    constraint pk_job_lease primary key (name)
+);
+
+insert into job_lease (name) values ('late-loans');
+
+-- customer email ranges of a late loan run, picked up by any node
+create table late_loan_shard (
+    id           bigint generated by default as identity,
+    run_date     date        not null,
+    shard        integer     not null,
+    late_date    date        not null,
+    from_email   varchar(255) not null,
+    to_email     varchar(255),
+    status       varchar(16) not null,
+    owner        varchar(64),
+    locked_until timestamp,
+    notices      integer     not null,
+    constraint pk_late_loan_shard primary key (id)
+);
+
+create unique index ux_late_loan_shard_run on late_loan_shard (run_date, shard);
+
+-- LateLoanShardRepository.findClaimableIds
+create index ix_late_loan_shard_status on late_loan_shard (status, run_date, shard);
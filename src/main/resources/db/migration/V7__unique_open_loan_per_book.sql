@@ -0,0 +1,6 @@
+-- at most one open loan per book, whichever instance lends it: open_book_id is the book of an open loan
+-- and null once the loan is returned, and a unique index accepts any number of nulls
+-- (the computed column stands in for a partial index, which h2 does not have)
+alter table loan add column open_book_id bigint as (case when returned is null or returned = false then id_book end);
+
+create unique index ux_loan_open_book on loan (open_book_id);
@@ -0,0 +1,5 @@
+-- last insert or update of a book, polled by the search index of every instance to pick up the books
+-- written through the others
+alter table books add column updated_at timestamp;
+
+create index ix_books_updated_at on books (updated_at);
@@ -0,0 +1,8 @@
+-- LoanRepository late loan queries filter on the stored due date (V3) instead of loan_date,
+-- so the loan period is no longer repeated by every caller
+drop index ix_loan_date_returned;
+
+create index ix_loan_due_date_returned on loan (due_date, returned);
+
+-- note: the migrations target h2, the only database of this application: the V3 backfill (dateadd)
+-- and the V7 computed column use h2 syntax and need a dialect specific version elsewhere
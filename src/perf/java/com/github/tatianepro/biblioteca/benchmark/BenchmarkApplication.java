@@ -0,0 +1,67 @@
+package com.github.tatianepro.biblioteca.benchmark;
+
+import com.github.tatianepro.biblioteca.BibliotecaApplication;
+import com.github.tatianepro.biblioteca.service.loan.ActiveLoanRegistry;
+import com.github.tatianepro.biblioteca.service.search.IsbnBloomFilter;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The application on a private embedded H2 database migrated by Flyway, for the benchmarks and the load
+ * test. Background work that would compete with the measured code (outbox workers, admin client
+ * registration) is switched off.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return start(WebApplicationType.NONE);
+    }
+
+    /**
+     * With {@link WebApplicationType#SERVLET} the server listens on a random port, published in the
+     * {@code local.server.port} property. {@code properties} override the defaults.
+     */
+    static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        List<String> defaults = new ArrayList<>(Arrays.asList(
+                "spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "server.port=0",
+                "spring.boot.admin.client.enabled=false",
+                "application.mail.outbox.workers=0",
+                "logging.file.name=",
+                "logging.level.root=WARN"));
+        defaults.addAll(Arrays.asList(properties));
+        return new SpringApplicationBuilder(BibliotecaApplication.class)
+                .web(webApplicationType)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties(defaults.toArray(new String[0]))
+                .run();
+    }
+
+    /**
+     * Generates the dataset into the started application and reloads the in-memory views of the
+     * catalog and the open loans, which were built from the empty database at startup.
+     */
+    static DatasetGenerator.Result seed(ConfigurableApplicationContext context, DatasetGenerator generator) {
+        try {
+            DatasetGenerator.Result result = generator.generate(context.getBean(DataSource.class));
+            context.getBean(ActiveLoanRegistry.class).rebuild();
+            context.getBean(IsbnBloomFilter.class).rebuild();
+            return result;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not seed the benchmark database", e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.tatianepro.biblioteca.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.api.mapper.BookMapper;
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Book search through BookServiceImpl.find (the filter used to be an Example with CONTAINING matching)
+ * and the JSON rendering of the page the controller returns, over {@code books} generated books.
+ * cmd: 'mvnw -Pperf test-compile exec:exec -Djmh.args=BookServiceBenchmark'
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    @Param("10000")
+    private int books;
+
+    private final Pageable firstPage = PageRequest.of(0, 20);
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private ObjectMapper objectMapper;
+    private Page<BookDto> page;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, DatasetGenerator.builder().books(books).build());
+        bookService = context.getBean(BookService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        BookMapper bookMapper = context.getBean(BookMapper.class);
+        page = bookService.find(Books.builder().title("aventuras").build(), firstPage).map(bookMapper::toDto);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Books> findByTitleFragment() {
+        return bookService.find(Books.builder().title("ventura").build(), firstPage);
+    }
+
+    @Benchmark
+    public Page<Books> findByTitleAndAuthor() {
+        return bookService.find(Books.builder().title("mar").author("assis").build(), firstPage);
+    }
+
+    @Benchmark
+    public Page<Books> findByIsbn() {
+        return bookService.find(Books.builder().isbn(DatasetGenerator.isbn(books / 2)).build(), firstPage);
+    }
+
+    @Benchmark
+    public byte[] pageOfBookDtoToJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,271 @@
+package com.github.tatianepro.biblioteca.benchmark;
+
+import lombok.Builder;
+import lombok.Value;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+/**
+ * Fills the books and loan tables with a synthetic catalog shaped like a real one, through JDBC batches
+ * in a single transaction.
+ * <p>
+ * Book popularity is Zipfian: a few books take most of the loans. Titles are made of Zipf-distributed
+ * words of {@link #TITLE_WORDS}, and authors come from a pool of first and last names where some
+ * authors wrote many books. Customers borrow with a Zipf skew too, so some of them have hundreds of
+ * loans. The loans are spread over the last {@code days} days. A book is never lent twice at the same
+ * time. The latest loan of a book in the last {@code openWindowDays} days is still open with
+ * probability {@code openRatio}, and the open ones past their due date are the late loans.
+ * <p>
+ * Book ids are 1..books, isbns {@link #isbn}, customers {@link #customer} and their emails
+ * {@link #email}, so benchmarks can address rows without querying for them. The same seed gives the
+ * same dataset.
+ * <p>
+ * cmd: 'mvnw -Pperf test-compile exec:exec@dataset -Ddataset.args="books=1000000 loans=5000000"'
+ * fills the H2 file database {@code url}, which the application then reads with
+ * {@code --spring.datasource.url=<url>}.
+ */
+@Value
+@Builder
+public class DatasetGenerator {
+
+    static final String[] TITLE_WORDS = {"aventuras", "mistério", "viagem", "história", "jardim", "cidade", "noite",
+            "mar", "guerra", "amor", "segredo", "montanha", "rio", "sombra", "luz", "tempo", "casa", "caminho",
+            "vento", "memórias", "ilha", "sertão", "estrela", "destino", "fogo", "silêncio", "reino", "floresta",
+            "inverno", "verão", "deserto", "coração", "porto", "janela", "espelho", "lua", "sol", "tesouro",
+            "ponte", "labirinto", "retrato", "carta", "promessa", "sonho", "viajante", "herdeiro", "cartas",
+            "crônicas", "fronteira", "tempestade"};
+    static final String[] FIRST_NAMES = {"Machado", "Clarice", "Jorge", "Cecília", "Graciliano", "Rachel", "Érico",
+            "Lygia", "Carlos", "Manuel", "José", "Ana", "Maria", "Paulo", "Fernando", "Adélia", "Mário", "Rubem",
+            "Hilda", "Raduan"};
+    static final String[] LAST_NAMES = {"Assis", "Lispector", "Amado", "Meireles", "Ramos", "Queiroz", "Verissimo",
+            "Telles", "Drummond", "Bandeira", "Saramago", "Pessoa", "Prado", "Andrade", "Braga", "Hilst", "Nassar",
+            "Alencar", "Rosa", "Scliar"};
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int COMMIT_EVERY = 50_000;
+    private static final int FREE_BOOK_ATTEMPTS = 8;
+
+    @Builder.Default int books = 10_000;
+    @Builder.Default int loans = 0;
+    @Builder.Default int customers = 1_000;
+    @Builder.Default int days = 365;
+    @Builder.Default int loanDays = 4;
+    @Builder.Default int openWindowDays = 30;
+    @Builder.Default double openRatio = 0.5;
+    @Builder.Default double popularitySkew = 1.0;
+    @Builder.Default double activitySkew = 0.8;
+    @Builder.Default double wordSkew = 1.0;
+    @Builder.Default long seed = 42;
+
+    @Value
+    public static class Result {
+        int books;
+        int loans;
+        int openLoans;
+        long millis;
+    }
+
+    public Result generate(DataSource dataSource) throws SQLException {
+        long start = System.currentTimeMillis();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                // every loan references a book inserted before it, the foreign key check is only overhead
+                execute(connection, "set referential_integrity false");
+                insertBooks(connection, new SplittableRandom(seed));
+                int[] inserted = insertLoans(connection, new SplittableRandom(seed + 1));
+                try (Statement statement = connection.createStatement()) {
+                    // the pooled optimizer hands out the 50 ids below the value it reads
+                    statement.execute("alter sequence books_seq restart with " + (books + 51));
+                    statement.execute("alter table loan alter column id restart with " + (loans + 1));
+                }
+                connection.commit();
+                return new Result(books, inserted[0], inserted[1], System.currentTimeMillis() - start);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                execute(connection, "set referential_integrity true");
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    public static String isbn(long book) {
+        return String.format("978%010d", book);
+    }
+
+    public static String customer(long customer) {
+        return "customer-" + customer;
+    }
+
+    public static String email(long customer) {
+        return customer(customer) + "@email.com";
+    }
+
+    private void insertBooks(Connection connection, SplittableRandom random) throws SQLException {
+        ZipfSampler words = new ZipfSampler(TITLE_WORDS.length, wordSkew);
+        int authorPool = Math.max(1, Math.min(books / 10, FIRST_NAMES.length * LAST_NAMES.length));
+        ZipfSampler authors = new ZipfSampler(authorPool, popularitySkew);
+        StringBuilder title = new StringBuilder();
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into books (id, title, author, isbn, version) values (?, ?, ?, ?, 0)")) {
+            for (int book = 1; book <= books; book++) {
+                title.setLength(0);
+                int length = 1 + random.nextInt(3);
+                for (int word = 0; word < length; word++) {
+                    title.append(word == 0 ? "" : " ").append(TITLE_WORDS[words.sample(random) - 1]);
+                }
+                int author = authors.sample(random) - 1;
+
+                insert.setLong(1, book);
+                insert.setString(2, title.toString());
+                insert.setString(3, FIRST_NAMES[author % FIRST_NAMES.length] + " " + LAST_NAMES[author / FIRST_NAMES.length]);
+                insert.setString(4, isbn(book));
+                addBatch(connection, insert, book);
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Walks back in time from today, so the first loan met for a book is its latest, the only one that
+     * may still be open, and each earlier loan has to be returned before the next one starts.
+     *
+     * @return the loans inserted and how many of them are open
+     */
+    private int[] insertLoans(Connection connection, SplittableRandom random) throws SQLException {
+        if (loans == 0 || books == 0) {
+            return new int[]{0, 0};
+        }
+        ZipfSampler popularity = new ZipfSampler(books, popularitySkew);
+        ZipfSampler activity = new ZipfSampler(customers, activitySkew);
+        int[] bookByRank = shuffledIds(books, random);
+        int[] customerByRank = shuffledIds(customers, random);
+        // days ago the next (later) loan of each book starts, MIN_VALUE while none was generated
+        int[] nextLoanStart = new int[books + 1];
+        Arrays.fill(nextLoanStart, Integer.MIN_VALUE);
+        LocalDate today = LocalDate.now();
+
+        int inserted = 0;
+        int open = 0;
+        try (PreparedStatement insert = connection.prepareStatement("insert into loan " +
+                " (id, customer, customer_email, id_book, loan_date, due_date, returned, version) " +
+                " values (?, ?, ?, ?, ?, ?, ?, 0)")) {
+            for (int loan = 0; loan < loans; loan++) {
+                int daysAgo = (int) ((long) loan * days / loans);
+                int book = freeBook(popularity, bookByRank, nextLoanStart, daysAgo, random);
+                if (book < 0) {
+                    continue;   // the popular books are all taken that day, the loan is dropped
+                }
+                boolean latest = nextLoanStart[book] == Integer.MIN_VALUE;
+                boolean returned = !latest || daysAgo >= openWindowDays || random.nextDouble() >= openRatio;
+                nextLoanStart[book] = daysAgo;
+                int customer = customerByRank[activity.sample(random) - 1];
+                LocalDate loanDate = today.minusDays(daysAgo);
+
+                insert.setLong(1, loans - loan);
+                insert.setString(2, customer(customer));
+                insert.setString(3, email(customer));
+                insert.setLong(4, book);
+                insert.setDate(5, Date.valueOf(loanDate));
+                insert.setDate(6, Date.valueOf(loanDate.plusDays(loanDays)));
+                insert.setBoolean(7, returned);
+                inserted++;
+                open += returned ? 0 : 1;
+                addBatch(connection, insert, inserted);
+            }
+            insert.executeBatch();
+        }
+        return new int[]{inserted, open};
+    }
+
+    private int freeBook(ZipfSampler popularity, int[] bookByRank, int[] nextLoanStart, int daysAgo,
+                         SplittableRandom random) {
+        for (int attempt = 0; attempt < FREE_BOOK_ATTEMPTS; attempt++) {
+            int book = bookByRank[popularity.sample(random) - 1];
+            if (nextLoanStart[book] <= daysAgo - loanDays) {
+                return book;
+            }
+        }
+        return -1;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static void addBatch(Connection connection, PreparedStatement insert, int row) throws SQLException {
+        insert.addBatch();
+        if (row % BATCH_SIZE == 0) {
+            insert.executeBatch();
+        }
+        if (row % COMMIT_EVERY == 0) {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Ids 1..count in random order, so popularity rank and id are unrelated.
+     */
+    private static int[] shuffledIds(int count, SplittableRandom random) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = ids[i];
+            ids[i] = ids[j];
+            ids[j] = swap;
+        }
+        return ids;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new TreeMap<>(Map.of(
+                "books", "100000",
+                "loans", "500000",
+                "customers", "10000",
+                "days", "365",
+                "seed", "42",
+                "url", "jdbc:h2:file:./target/biblioteca-dataset"));
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0 || !options.containsKey(arg.substring(0, separator))) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + options.keySet());
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        DatasetGenerator generator = DatasetGenerator.builder()
+                .books(Integer.parseInt(options.get("books")))
+                .loans(Integer.parseInt(options.get("loans")))
+                .customers(Integer.parseInt(options.get("customers")))
+                .days(Integer.parseInt(options.get("days")))
+                .seed(Long.parseLong(options.get("seed")))
+                .build();
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start(WebApplicationType.NONE,
+                "spring.datasource.url=" + options.get("url"))) {
+            Result result = generator.generate(context.getBean(DataSource.class));
+            System.out.printf("%s: %d books, %d loans (%d open) in %d ms%n", options.get("url"),
+                    result.getBooks(), result.getLoans(), result.getOpenLoans(), result.getMillis());
+        }
+    }
+}
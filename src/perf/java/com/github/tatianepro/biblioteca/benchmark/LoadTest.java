@@ -0,0 +1,385 @@
+package com.github.tatianepro.biblioteca.benchmark;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Open model load test of the book and loan endpoints: the application is started on a random local port
+ * over a {@link DatasetGenerator} dataset of {@code books} and {@code loans} and requests are issued at {@code rate} per second, whatever the
+ * responses take, with a {@code mix} of book searches, loan searches, loan creates and returns.
+ * <p>
+ * The response time of each request is measured from the moment it was scheduled to start, not from the
+ * moment it was sent, so a stalled server is charged for the requests it kept waiting (coordinated
+ * omission). The service time, from the send, is reported next to it for comparison. Percentiles are
+ * printed per endpoint and the full distributions written as .hgrm files to {@code out}.
+ * <p>
+ * cmd: 'mvnw -Pperf test-compile exec:exec@load-test -Dload.args="rate=200 duration=60"'
+ * <br>
+ * options (key=value): rate, duration and warmup in seconds, books, loans, customers,
+ * mix (e.g. books:60,loans:10,create:15,return:15), arrivals (poisson or constant), timeout in seconds, out.
+ */
+public class LoadTest {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "rate", "100",
+            "duration", "60",
+            "warmup", "10",
+            "books", "10000",
+            "loans", "0",
+            "customers", "1000",
+            "mix", "books:60,loans:10,create:15,return:15",
+            "arrivals", "poisson",
+            "timeout", "10",
+            "out", "target/loadtest");
+
+    enum Operation {
+        SEARCH_BOOKS("books", "GET /api/books"),
+        SEARCH_LOANS("loans", "GET /api/loans"),
+        CREATE_LOAN("create", "POST /api/loans"),
+        RETURN_LOAN("return", "PATCH /api/loans/{id}");
+
+        private final String key;
+        private final String endpoint;
+
+        Operation(String key, String endpoint) {
+            this.key = key;
+            this.endpoint = endpoint;
+        }
+    }
+
+    private final URI baseUri;
+    private final HttpClient client;
+    private final Duration timeout;
+    private final int books;
+    private final int customers;
+    private final Operation[] mix;
+    private final int[] cumulativeWeights;
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+
+    private final Queue<Long> availableBooks = new ConcurrentLinkedQueue<>();
+    private final Queue<long[]> openLoans = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long measureFromNanos;
+
+    /**
+     * @param openLoans id and book of the loans open in the dataset, the books of all others can be lent
+     */
+    LoadTest(int port, int books, List<long[]> openLoans, int customers, String mix, Duration timeout) {
+        this.baseUri = URI.create("http://localhost:" + port);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        this.timeout = timeout;
+        this.books = books;
+        this.customers = customers;
+
+        Map<Operation, Integer> weights = parseMix(mix);
+        this.mix = weights.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[this.mix.length];
+        int total = 0;
+        for (int i = 0; i < this.mix.length; i++) {
+            total += weights.get(this.mix[i]);
+            cumulativeWeights[i] = total;
+        }
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new EndpointStats());
+        }
+        Set<Long> borrowed = new HashSet<>();
+        for (long[] loan : openLoans) {
+            this.openLoans.add(loan);
+            borrowed.add(loan[1]);
+        }
+        for (long book = 1; book <= books; book++) {
+            if (!borrowed.contains(book)) {
+                availableBooks.add(book);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int books = Integer.parseInt(options.get("books"));
+        int customers = Integer.parseInt(options.get("customers"));
+
+        ConfigurableApplicationContext context = BenchmarkApplication.start(WebApplicationType.SERVLET);
+        try {
+            BenchmarkApplication.seed(context, DatasetGenerator.builder()
+                    .books(books)
+                    .loans(Integer.parseInt(options.get("loans")))
+                    .customers(customers)
+                    .build());
+            List<long[]> openLoans = context.getBean(JdbcTemplate.class).query(
+                    "select id, id_book from loan where returned = false",
+                    (row, index) -> new long[]{row.getLong("id"), row.getLong("id_book")});
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+            LoadTest loadTest = new LoadTest(port, books, openLoans, customers,
+                    options.get("mix"),
+                    Duration.ofSeconds(Long.parseLong(options.get("timeout"))));
+            long durationSeconds = Long.parseLong(options.get("duration"));
+            System.out.printf("load test: %s%n", options);
+            loadTest.run(Double.parseDouble(options.get("rate")),
+                    "poisson".equals(options.get("arrivals")),
+                    TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("warmup"))),
+                    TimeUnit.SECONDS.toNanos(durationSeconds));
+            loadTest.report(System.out, durationSeconds);
+            loadTest.writeHistograms(Paths.get(options.get("out")));
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Issues requests at the intended start times until the warmup and the measured duration are over,
+     * then waits for the ones in flight. Requests scheduled during the warmup are not recorded.
+     */
+    void run(double rate, boolean poisson, long warmupNanos, long durationNanos) throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long startNanos = System.nanoTime();
+        measureFromNanos = startNanos + warmupNanos;
+        long endNanos = measureFromNanos + durationNanos;
+
+        double offsetNanos = 0;
+        long intendedNanos;
+        while ((intendedNanos = startNanos + (long) offsetNanos) < endNanos) {
+            long waitNanos;
+            while ((waitNanos = intendedNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            fire(pick(random), intendedNanos);
+            offsetNanos += poisson ? -Math.log(1 - random.nextDouble()) * intervalNanos : intervalNanos;
+        }
+
+        long drainUntil = System.nanoTime() + timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+    }
+
+    void report(PrintStream out, long durationSeconds) {
+        out.println();
+        printTable(out, "response time, from the intended start (ms)", stats -> stats.responseTime, durationSeconds);
+        out.println();
+        printTable(out, "service time, from the send, not corrected (ms)", stats -> stats.serviceTime, durationSeconds);
+        if (inFlight.get() > 0) {
+            out.printf("%d requests still in flight were not recorded%n", inFlight.get());
+        }
+    }
+
+    void writeHistograms(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<Operation, EndpointStats> entry : stats.entrySet()) {
+            String name = entry.getKey().name().toLowerCase(Locale.ROOT);
+            write(directory.resolve(name + ".hgrm"), entry.getValue().responseTime);
+            write(directory.resolve(name + "-service.hgrm"), entry.getValue().serviceTime);
+        }
+        System.out.printf("histograms written to %s%n", directory.toAbsolutePath());
+    }
+
+    private void fire(Operation operation, long intendedNanos) {
+        switch (operation) {
+            case CREATE_LOAN:
+                Long book = availableBooks.poll();
+                if (book != null) {
+                    createLoan(book, intendedNanos);
+                    return;
+                }
+                break;
+            case RETURN_LOAN:
+                long[] loan = openLoans.poll();
+                if (loan != null) {
+                    returnLoan(loan, intendedNanos);
+                    return;
+                }
+                break;
+            case SEARCH_LOANS:
+                searchLoans(intendedNanos);
+                return;
+            default:
+                break;
+        }
+        // nothing to borrow or to return yet, the slot still gets a request
+        searchBooks(intendedNanos);
+    }
+
+    private void searchBooks(long intendedNanos) {
+        String[] words = DatasetGenerator.TITLE_WORDS;
+        String title = words[ThreadLocalRandom.current().nextInt(words.length)];
+        HttpRequest request = get("/api/books?page=0&size=20&title=" + URLEncoder.encode(title, StandardCharsets.UTF_8));
+        send(Operation.SEARCH_BOOKS, request, intendedNanos, response -> { }, () -> { });
+    }
+
+    private void searchLoans(long intendedNanos) {
+        int book = 1 + ThreadLocalRandom.current().nextInt(books);
+        HttpRequest request = get("/api/loans?page=0&size=20&isbn=" + DatasetGenerator.isbn(book)
+                + "&customer=" + DatasetGenerator.customer(randomCustomer()));
+        send(Operation.SEARCH_LOANS, request, intendedNanos, response -> { }, () -> { });
+    }
+
+    private void createLoan(long book, long intendedNanos) {
+        int customer = randomCustomer();
+        String body = String.format("{\"isbn\":\"%s\",\"customer\":\"%s\",\"email\":\"%s\"}",
+                DatasetGenerator.isbn(book), DatasetGenerator.customer(customer), DatasetGenerator.email(customer));
+        HttpRequest request = json("/api/loans").POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        send(Operation.CREATE_LOAN, request, intendedNanos,
+                response -> openLoans.add(new long[]{Long.parseLong(response.body().trim()), book}),
+                () -> availableBooks.add(book));
+    }
+
+    private void returnLoan(long[] loan, long intendedNanos) {
+        HttpRequest request = json("/api/loans/" + loan[0])
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"returned\":true}"))
+                .build();
+        send(Operation.RETURN_LOAN, request, intendedNanos,
+                response -> availableBooks.add(loan[1]),
+                () -> openLoans.add(loan));
+    }
+
+    private void send(Operation operation, HttpRequest request, long intendedNanos,
+                      Consumer<HttpResponse<String>> onSuccess, Runnable onFailure) {
+        inFlight.incrementAndGet();
+        long sentNanos = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            long doneNanos = System.nanoTime();
+            try {
+                boolean success = error == null && response.statusCode() / 100 == 2;
+                if (intendedNanos >= measureFromNanos) {
+                    stats.get(operation).record(intendedNanos, sentNanos, doneNanos, success);
+                }
+                if (success) {
+                    onSuccess.accept(response);
+                } else {
+                    onFailure.run();
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path)).timeout(timeout).GET().build();
+    }
+
+    private HttpRequest.Builder json(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json");
+    }
+
+    private int randomCustomer() {
+        return 1 + ThreadLocalRandom.current().nextInt(customers);
+    }
+
+    private Operation pick(ThreadLocalRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return mix[i];
+            }
+        }
+        return mix[mix.length - 1];
+    }
+
+    private void printTable(PrintStream out, String title, Function<EndpointStats, Histogram> histogram,
+                            long durationSeconds) {
+        out.println(title);
+        out.printf("%-24s %9s %8s %8s", "endpoint", "requests", "failed", "req/s");
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9s", "p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : percentile));
+        }
+        out.printf(" %9s%n", "max");
+        for (Map.Entry<Operation, EndpointStats> entry : stats.entrySet()) {
+            Histogram values = histogram.apply(entry.getValue());
+            out.printf("%-24s %9d %8d %8.1f", entry.getKey().endpoint, values.getTotalCount(),
+                    entry.getValue().failures.sum(), (double) values.getTotalCount() / durationSeconds);
+            for (double percentile : PERCENTILES) {
+                out.printf(" %9.2f", values.getValueAtPercentile(percentile) / MICROS_PER_MILLI);
+            }
+            out.printf(" %9.2f%n", values.getMaxValue() / MICROS_PER_MILLI);
+        }
+    }
+
+    private static void write(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new TreeMap<>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0 || !DEFAULTS.containsKey(arg.substring(0, separator))) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + DEFAULTS.keySet());
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] keyAndWeight = entry.trim().split(":");
+            Operation operation = Arrays.stream(Operation.values())
+                    .filter(candidate -> candidate.key.equals(keyAndWeight[0]))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown operation " + keyAndWeight[0] + " in mix " + mix));
+            int weight = Integer.parseInt(keyAndWeight[1]);
+            if (weight > 0) {
+                weights.put(operation, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Mix " + mix + " has no operation with a positive weight");
+        }
+        return weights;
+    }
+
+    private static final class EndpointStats {
+        // values in microseconds, auto resized so a long stall is never clipped
+        private final Histogram responseTime = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+        private final Histogram serviceTime = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+        private final LongAdder failures = new LongAdder();
+
+        private void record(long intendedNanos, long sentNanos, long doneNanos, boolean success) {
+            responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(doneNanos - intendedNanos));
+            serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(doneNanos - sentNanos));
+            if (!success) {
+                failures.increment();
+            }
+        }
+    }
+}
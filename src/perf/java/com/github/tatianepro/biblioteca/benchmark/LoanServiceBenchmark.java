@@ -0,0 +1,67 @@
+package com.github.tatianepro.biblioteca.benchmark;
+
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.entity.Loan;
+import com.github.tatianepro.biblioteca.service.LoanService;
+import com.github.tatianepro.biblioteca.service.loan.ActiveLoanRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LoanServiceImpl.save, the availability check of the book plus the insert of the loan, each call on a
+ * book not borrowed yet. Every iteration starts with all loans returned, so {@code books} must be larger
+ * than the calls of one iteration. cmd: 'mvnw -Pperf test-compile exec:exec -Djmh.args=LoanServiceBenchmark'
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoanServiceBenchmark {
+
+    @Param("200000")
+    private int books;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private LoanService loanService;
+    private ActiveLoanRegistry activeLoans;
+    private long nextBook;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        BenchmarkApplication.seed(context, DatasetGenerator.builder().books(books).build());
+        loanService = context.getBean(LoanService.class);
+        activeLoans = context.getBean(ActiveLoanRegistry.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void returnAllBooks() {
+        jdbcTemplate.update("update loan set returned = true where returned is null or returned = false");
+        activeLoans.rebuild();
+        nextBook = 1;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Loan save() {
+        Books book = Books.builder().id(nextBook++).version(0L).build();
+        return loanService.save(Loan.builder()
+                .customer("Fulano")
+                .customerEmail("fulano@email.com")
+                .book(book)
+                .loanDate(LocalDate.now())
+                .build());
+    }
+}
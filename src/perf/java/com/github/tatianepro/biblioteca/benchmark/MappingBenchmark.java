@@ -0,0 +1,86 @@
+package com.github.tatianepro.biblioteca.benchmark;
+
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
+import com.github.tatianepro.biblioteca.api.mapper.BookMapper;
+import com.github.tatianepro.biblioteca.api.mapper.LoanMapper;
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.entity.Loan;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reflective ModelMapper (former controller path) against the MapStruct generated mappers,
+ * per mapped row. cmd: 'mvnw -Pperf test-compile exec:exec -Djmh.args=MappingBenchmark'
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final BookMapper bookMapper = Mappers.getMapper(BookMapper.class);
+    private final LoanMapper loanMapper = Mappers.getMapper(LoanMapper.class);
+
+    private Books book;
+    private BookDto bookDto;
+    private Loan loan;
+    private LoanFilterDto loanFilterDto;
+
+    @Setup
+    public void setUp() {
+        book = Books.builder().id(1L).title("As aventuras").author("Artur").isbn("9781234567897").build();
+        bookDto = BookDto.builder().title("As aventuras").author("Artur").isbn("9781234567897").build();
+        loan = Loan.builder().id(1L).customer("Fulano").customerEmail("fulano@email.com")
+                .book(book).loanDate(LocalDate.now()).build();
+        loanFilterDto = LoanFilterDto.builder().isbn("9781234567897").customer("Fulano")
+                .bookDto(BookDto.builder().isbn("9781234567897").build()).build();
+    }
+
+    @Benchmark
+    public BookDto bookToDtoModelMapper() {
+        return modelMapper.map(book, BookDto.class);
+    }
+
+    @Benchmark
+    public BookDto bookToDtoMapStruct() {
+        return bookMapper.toDto(book);
+    }
+
+    @Benchmark
+    public Books dtoToBookModelMapper() {
+        return modelMapper.map(bookDto, Books.class);
+    }
+
+    @Benchmark
+    public Books dtoToBookMapStruct() {
+        return bookMapper.toEntity(bookDto);
+    }
+
+    @Benchmark
+    public LoanFilterDto loanToFilterDtoModelMapper() {
+        return modelMapper.map(loan, LoanFilterDto.class);
+    }
+
+    @Benchmark
+    public LoanFilterDto loanToFilterDtoMapStruct() {
+        return loanMapper.toFilterDto(loan);
+    }
+
+    @Benchmark
+    public Loan filterDtoToLoanModelMapper() {
+        return modelMapper.map(loanFilterDto, Loan.class);
+    }
+
+    @Benchmark
+    public Loan filterDtoToLoanMapStruct() {
+        return loanMapper.toEntity(loanFilterDto);
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.tatianepro.biblioteca.benchmark;
+
+import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import com.github.tatianepro.biblioteca.model.repository.LoanRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository queries behind the hottest endpoints, over {@code books} generated books with five loans
+ * each on average, skewed towards the popular books and the most active customers.
+ * cmd: 'mvnw -Pperf test-compile exec:exec -Djmh.args=RepositoryBenchmark'
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private static final int CUSTOMERS = 1000;
+    private static final int LOANS_PER_BOOK = 5;
+
+    @Param("10000")
+    private int books;
+
+    private final Pageable firstPage = PageRequest.of(0, 20);
+
+    private ConfigurableApplicationContext context;
+    private BookRepository bookRepository;
+    private LoanRepository loanRepository;
+    private String isbn;
+    private String customer;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.seed(context, DatasetGenerator.builder()
+                .books(books)
+                .loans(books * LOANS_PER_BOOK)
+                .customers(CUSTOMERS)
+                .build());
+        bookRepository = context.getBean(BookRepository.class);
+        loanRepository = context.getBean(LoanRepository.class);
+        isbn = DatasetGenerator.isbn(books / 2);
+        customer = DatasetGenerator.customer(7);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Books> bookByIsbn() {
+        return bookRepository.findByIsbn(isbn);
+    }
+
+    @Benchmark
+    public Page<LoanFilterDto> loansByIsbnOrCustomer() {
+        return loanRepository.findDtoByBookIsbnOrCustomer(isbn, customer, firstPage);
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.tatianepro.biblioteca.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Ranks 1..n drawn with probability proportional to 1 / rank^exponent, by rejection-inversion
+ * (W. Hörmann and G. Derflinger, 1996): constant time and memory per sample whatever n is, where a
+ * cumulative table would take n doubles for the millions of books of a dataset.
+ */
+final class ZipfSampler {
+
+    private static final double TAYLOR_THRESHOLD = 1e-8;
+
+    private final int n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double acceptBound;
+
+    ZipfSampler(int n, double exponent) {
+        if (n < 1 || exponent <= 0) {
+            throw new IllegalArgumentException("Zipf needs n >= 1 and a positive exponent, got " + n + " and " + exponent);
+        }
+        this.n = n;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1.0;
+        this.hIntegralN = hIntegral(n + 0.5);
+        this.acceptBound = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    int sample(SplittableRandom random) {
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            int rank = (int) Math.max(1, Math.min(n, (long) (x + 0.5)));
+            if (rank - x <= acceptBound || u >= hIntegral(rank + 0.5) - h(rank)) {
+                return rank;
+            }
+        }
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return expm1OverX((1.0 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = Math.max(-1.0, x * (1.0 - exponent));
+        return Math.exp(log1pOverX(t) * x);
+    }
+
+    // log1p(x) / x and expm1(x) / x, by their Taylor series near 0 where the quotient loses precision
+
+    private static double log1pOverX(double x) {
+        return Math.abs(x) > TAYLOR_THRESHOLD ? Math.log1p(x) / x : 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+    }
+
+    private static double expm1OverX(double x) {
+        return Math.abs(x) > TAYLOR_THRESHOLD ? Math.expm1(x) / x : 1.0 + x * 0.5 * (1.0 + x / 3.0 * (1.0 + 0.25 * x));
+    }
+}
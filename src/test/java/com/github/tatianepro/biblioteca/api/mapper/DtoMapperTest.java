@@ -0,0 +1,63 @@
+package com.github.tatianepro.biblioteca.api.mapper;
+
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.entity.Loan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// os mappers gerados devem manter exatamente o resultado do ModelMapper que substituem
+public class DtoMapperTest {
+
+    BookMapper bookMapper = Mappers.getMapper(BookMapper.class);
+    LoanMapper loanMapper = Mappers.getMapper(LoanMapper.class);
+    ModelMapper modelMapper = new ModelMapper();
+
+    @Test
+    @DisplayName("Deve mapear livro e BookDto como o ModelMapper.")
+    public void bookMappingTest() {
+        //cenario
+        Books book = createBook();
+        BookDto bookDto = BookDto.builder().id(2L).title("Outro").author("Fulano").isbn("9781234567898").build();
+
+        //execucao e verificacao
+        assertThat(bookMapper.toDto(book)).isEqualTo(modelMapper.map(book, BookDto.class));
+        assertThat(bookMapper.toEntity(bookDto)).isEqualTo(modelMapper.map(bookDto, Books.class));
+        assertThat(bookMapper.toEntity(new BookDto())).isEqualTo(modelMapper.map(new BookDto(), Books.class));
+    }
+
+    @Test
+    @DisplayName("Deve mapear empréstimo para LoanFilterDto como o ModelMapper.")
+    public void loanToFilterDtoTest() {
+        //cenario
+        Loan loan = Loan.builder().id(3L).customer("Fulano").customerEmail("fulano@email.com")
+                .book(createBook()).loanDate(LocalDate.now()).returned(true).build();
+
+        //execucao e verificacao
+        assertThat(loanMapper.toFilterDto(loan)).isEqualTo(modelMapper.map(loan, LoanFilterDto.class));
+    }
+
+    @Test
+    @DisplayName("Deve mapear LoanFilterDto para empréstimo como o ModelMapper.")
+    public void filterDtoToLoanTest() {
+        //cenario
+        LoanFilterDto filter = LoanFilterDto.builder().id(4L).isbn("9781234567897").customer("Fulano")
+                .email("fulano@email.com").bookDto(BookDto.builder().isbn("9781234567897").build()).build();
+        LoanFilterDto withoutBook = LoanFilterDto.builder().customer("Fulano").build();
+
+        //execucao e verificacao
+        assertThat(loanMapper.toEntity(filter)).isEqualTo(modelMapper.map(filter, Loan.class));
+        assertThat(loanMapper.toEntity(withoutBook)).isEqualTo(modelMapper.map(withoutBook, Loan.class));
+    }
+
+    private Books createBook() {
+        return Books.builder().id(1L).title("As aventuras").author("Artur").isbn("9781234567897").build();
+    }
+}
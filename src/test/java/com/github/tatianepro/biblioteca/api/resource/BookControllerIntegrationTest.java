@@ -0,0 +1,80 @@
+package com.github.tatianepro.biblioteca.api.resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// teste de integração da atualização com a versão lida, do controller até o banco
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BookControllerIntegrationTest {
+
+    static String BOOK_API = "/api/books";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @AfterEach
+    public void tearDown() {
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deve atualizar com a versão lida e recusar com conflict a atualização de uma versão antiga.")
+    public void updateWithReadVersionTest() throws Exception {
+        //cenario
+        Long id = bookRepository.save(Books.builder().title("As aventuras").author("Artur").isbn("9781234567897").build()).getId();
+        String body = mockMvc
+                .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/" + id)).accept(MediaType.APPLICATION_JSON))
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("version").value(0) )
+                .andReturn().getResponse().getContentAsString();
+        BookDto readBook = objectMapper.readValue(body, BookDto.class);
+
+        //execucao
+        readBook.setTitle("Aventuras no deserto");
+        String firstUpdate = objectMapper.writeValueAsString(readBook);
+        readBook.setTitle("Aventuras na floresta");
+        String staleUpdate = objectMapper.writeValueAsString(readBook);
+
+        //verificacao
+        mockMvc
+                .perform(MockMvcRequestBuilders.put(BOOK_API.concat("/" + id))
+                        .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON).content(firstUpdate))
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("title").value("Aventuras no deserto") )
+                .andExpect( jsonPath("version").value(1) );
+        mockMvc
+                .perform(MockMvcRequestBuilders.put(BOOK_API.concat("/" + id))
+                        .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON).content(staleUpdate))
+                .andExpect( status().isConflict() )
+                .andExpect( jsonPath("errors[0]").value("Concurrent update, reload and try again.") );
+        mockMvc
+                .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/" + id)).accept(MediaType.APPLICATION_JSON))
+                .andExpect( jsonPath("title").value("Aventuras no deserto") )
+                .andExpect( jsonPath("version").value(1) );
+    }
+}
@@ -2,11 +2,18 @@ package com.github.tatianepro.biblioteca.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.api.dto.CatalogImportDto;
+import com.github.tatianepro.biblioteca.api.dto.LoanCursor;
 import com.github.tatianepro.biblioteca.api.exception.BusinessException;
 import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.entity.Loan;
+import com.github.tatianepro.biblioteca.service.BookCatalogService;
 import com.github.tatianepro.biblioteca.service.BookService;
+import com.github.tatianepro.biblioteca.service.CatalogFormat;
 import com.github.tatianepro.biblioteca.service.LoanService;
 import org.hamcrest.Matchers;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.DataException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,7 +26,10 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -27,7 +37,14 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.time.LocalDate;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.hasSize;
@@ -52,6 +69,9 @@ public class BookControllerTest {
     @MockBean
     LoanService loanService;
 
+    @MockBean
+    BookCatalogService bookCatalogService;
+
     @Test
     @DisplayName("Deve criar um livro com sucesso.")
     public void createBookTest() throws Exception {
@@ -80,6 +100,215 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve criar livros em lote informando o resultado de cada item.")
+    public void createBatchTest() throws Exception {
+        //cenario
+        BookDto validBook = createNewBookDto();
+        BookDto invalidBook = BookDto.builder().isbn("9781234567898").build();
+        BookDto duplicatedBook = BookDto.builder().title("Outro").author("Fulano").isbn("9781234567899").build();
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(validBook, invalidBook, duplicatedBook));
+
+        BDDMockito.given(bookService.saveAll(Mockito.anyList())).willAnswer(invocation -> {
+            List<Books> books = invocation.getArgument(0);
+            books.get(0).setId(10L);
+            return Collections.singletonList(books.get(0));
+        });
+
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("$", hasSize(3)) )
+                .andExpect( jsonPath("[0].status").value("CREATED") )
+                .andExpect( jsonPath("[0].id").value(10L) )
+                .andExpect( jsonPath("[1].status").value("INVALID") )
+                .andExpect( jsonPath("[1].errors", hasSize(2)) )
+                .andExpect( jsonPath("[2].status").value("DUPLICATED") )
+                .andExpect( jsonPath("[2].isbn").value("9781234567899") );
+
+        Mockito.verify(bookService, Mockito.times(1)).saveAll(Mockito.argThat(books -> books.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Deve marcar como inválido o item nulo do lote.")
+    public void createBatchNullItemTest() throws Exception {
+        //cenario
+        String json = "[null, " + new ObjectMapper().writeValueAsString(createNewBookDto()) + "]";
+        BDDMockito.given(bookService.saveAll(Mockito.anyList())).willAnswer(invocation -> {
+            List<Books> books = invocation.getArgument(0);
+            books.get(0).setId(10L);
+            return books;
+        });
+
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("$", hasSize(2)) )
+                .andExpect( jsonPath("[0].status").value("INVALID") )
+                .andExpect( jsonPath("[0].errors[0]").value("book: must not be null") )
+                .andExpect( jsonPath("[1].status").value("CREATED") );
+    }
+
+    @Test
+    @DisplayName("Deve retornar conflict quando o lote violar um índice único.")
+    public void createBatchUniqueViolationTest() throws Exception {
+        //cenario
+        String json = new ObjectMapper().writeValueAsString(Collections.singletonList(createNewBookDto()));
+        BDDMockito.given(bookService.saveAll(Mockito.anyList())).willThrow(new DataIntegrityViolationException("could not execute batch",
+                new ConstraintViolationException("could not execute batch",
+                        new SQLException("Unique index or primary key violation", "23505"), "ux_books_isbn")));
+
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isConflict() )
+                .andExpect( jsonPath("errors[0]").value("Conflicting data, reload and try again.") );
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request quando o lote violar outra restrição do banco.")
+    public void createBatchValueTooLongTest() throws Exception {
+        //cenario
+        String json = new ObjectMapper().writeValueAsString(Collections.singletonList(createNewBookDto()));
+        BDDMockito.given(bookService.saveAll(Mockito.anyList())).willThrow(new DataIntegrityViolationException("could not execute batch",
+                new DataException("could not execute batch", new SQLException("Value too long for column \"TITLE\"", "22001"))));
+
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isBadRequest() )
+                .andExpect( jsonPath("errors[0]").value("Invalid data, check the required fields and their sizes.") );
+    }
+
+    @Test
+    @DisplayName("Deve retornar conflict quando a atualização concorrente não puder ser reaplicada.")
+    public void updateBookConflictTest() throws Exception {
+        //cenario
+        Long id = 1L;
+        String json = new ObjectMapper().writeValueAsString(createNewBookDto());
+        Books book = Books.builder().id(id).title("some title").author("some author").isbn("321").build();
+        BDDMockito.given(bookService.getById(id)).willReturn(Optional.of(book));
+        BDDMockito.given(bookService.update(book)).willThrow(new ObjectOptimisticLockingFailureException(Books.class, id));
+
+        //execucao
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/" + id))
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isConflict() )
+                .andExpect( jsonPath("errors[0]").value("Concurrent update, reload and try again.") );
+    }
+
+    @Test
+    @DisplayName("Deve retornar conflict ao atualizar um livro a partir de uma versão desatualizada.")
+    public void updateBookStaleVersionTest() throws Exception {
+        //cenario
+        Long id = 1L;
+        BookDto bookDto = createNewBookDto();
+        bookDto.setVersion(1L);
+        String json = new ObjectMapper().writeValueAsString(bookDto);
+        Books book = Books.builder().id(id).title("some title").author("some author").isbn("321").version(2L).build();
+        BDDMockito.given(bookService.getById(id)).willReturn(Optional.of(book));
+
+        //execucao
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/" + id))
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isConflict() )
+                .andExpect( jsonPath("errors[0]").value("Concurrent update, reload and try again.") );
+        Mockito.verify(bookService, Mockito.never()).update(Mockito.any(Books.class));
+    }
+
+    @Test
+    @DisplayName("Deve exportar o catálogo em CSV.")
+    public void exportCatalogTest() throws Exception {
+        //cenario
+        BDDMockito.given(bookCatalogService.export(Mockito.eq(CatalogFormat.CSV), Mockito.any(OutputStream.class)))
+                .willAnswer(invocation -> {
+                    OutputStream outputStream = invocation.getArgument(1);
+                    outputStream.write("id,title,author,isbn\n".getBytes(StandardCharsets.UTF_8));
+                    return 0L;
+                });
+
+        //execucao
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/export?format=csv"));
+
+        //verificacao
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isOk() )
+                .andExpect( MockMvcResultMatchers.content().contentTypeCompatibleWith("text/csv") )
+                .andExpect( MockMvcResultMatchers.content().string("id,title,author,isbn\n") );
+    }
+
+    @Test
+    @DisplayName("Deve importar um catálogo em NDJSON.")
+    public void importCatalogTest() throws Exception {
+        //cenario
+        CatalogImportDto result = CatalogImportDto.builder().read(3).created(1).duplicated(1).invalid(1).build();
+        BDDMockito.given(bookCatalogService.importCatalog(Mockito.eq(CatalogFormat.NDJSON), Mockito.any(InputStream.class)))
+                .willReturn(result);
+
+        //execucao
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/import"))
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Meu livro\",\"author\":\"Autor\",\"isbn\":\"001\"}\n");
+
+        //verificacao
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("read").value(3) )
+                .andExpect( jsonPath("created").value(1) )
+                .andExpect( jsonPath("duplicated").value(1) )
+                .andExpect( jsonPath("invalid").value(1) );
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request ao exportar em formato desconhecido.")
+    public void exportInvalidFormatTest() throws Exception {
+        mockMvc
+                .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export?format=xml")))
+                .andExpect( status().isBadRequest() )
+                .andExpect( jsonPath("errors[0]").value("Format must be ndjson or csv") );
+    }
+
     // validação de integridade
     @Test
     @DisplayName("Deve lançar erro de validação quando não houver dados suficientes para criação de um livro.")
@@ -131,7 +360,7 @@ public class BookControllerTest {
         //cenario
         Long id = 1L;
 
-        Books book = Books
+        BookDto book = BookDto
                 .builder()
                 .id(id)
                 .title(createNewBookDto().getTitle())
@@ -139,7 +368,7 @@ public class BookControllerTest {
                 .isbn(createNewBookDto().getIsbn())
                 .build();
 
-        BDDMockito.given(bookService.getById(id)).willReturn(Optional.of(book));
+        BDDMockito.given(bookService.getDtoById(id)).willReturn(Optional.of(book));
 
         //execucao
         MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
@@ -162,7 +391,7 @@ public class BookControllerTest {
     public void bookNotFoundTest() throws Exception {
         //cenario
         Long id = 1L;
-        BDDMockito.given(bookService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(bookService.getDtoById(Mockito.anyLong())).willReturn(Optional.empty());
 
         //execucao
         MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
@@ -301,6 +530,75 @@ public class BookControllerTest {
                 .andExpect( jsonPath("content", Matchers.hasSize(1)));
     }
 
+    @Test
+    @DisplayName("Deve listar empréstimos de um livro por cursor, sem contagem total.")
+    public void getLoansByBookAfterCursorTest() throws Exception {
+        //cenario
+        Long id = 1L;
+        Books book = Books.builder().id(id).title("As aventuras").author("Artur").isbn("9781234567897").build();
+        LocalDate loanDate = LocalDate.of(2021, 6, 10);
+        Loan loan = Loan.builder().id(7L).customer("Fulano").customerEmail("fulano@email.com").book(book).loanDate(loanDate).build();
+        String after = new LoanCursor(LocalDate.of(2021, 6, 11), 8L).encode();
+
+        BDDMockito.given(bookService.getById(id)).willReturn(Optional.of(book));
+        BDDMockito.given(loanService.getLoansByBookAfter(book, LocalDate.of(2021, 6, 11), 8L, 1))
+                .willReturn(new SliceImpl<Loan>(Arrays.asList(loan), PageRequest.of(0, 1), true));
+
+        //execucao
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + id + "/loans/cursor?size=1&after=" + after))
+                .accept(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("content", Matchers.hasSize(1)))
+                .andExpect( jsonPath("content[0].id").value(7L))
+                .andExpect( jsonPath("hasNext").value(true))
+                .andExpect( jsonPath("next").value(new LoanCursor(loanDate, 7L).encode()))
+                .andExpect( jsonPath("totalElements").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve limitar o tamanho da fatia listada por cursor.")
+    public void getLoansByBookCursorSizeLimitTest() throws Exception {
+        //cenario
+        Long id = 1L;
+        Books book = Books.builder().id(id).title("As aventuras").author("Artur").isbn("9781234567897").build();
+        BDDMockito.given(bookService.getById(id)).willReturn(Optional.of(book));
+        BDDMockito.given(loanService.getLoansByBookAfter(book, null, null, 100))
+                .willReturn(new SliceImpl<Loan>(Collections.emptyList(), PageRequest.of(0, 100), false));
+
+        //execucao
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + id + "/loans/cursor?size=100000"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("content", Matchers.hasSize(0)))
+                .andExpect( jsonPath("hasNext").value(false));
+        Mockito.verify(loanService).getLoansByBookAfter(book, null, null, 100);
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request quando o cursor for inválido.")
+    public void getLoansByBookInvalidCursorTest() throws Exception {
+        //execucao
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1/loans/cursor?after=invalido"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        //verificacao
+        mockMvc
+                .perform(mockRequest)
+                .andExpect( status().isBadRequest() )
+                .andExpect( jsonPath("errors[0]").value("Invalid cursor"));
+    }
+
     private BookDto createNewBookDto() {
         return BookDto.builder().title("As aventuras").author("Artur").isbn("9781234567897").build();
     }
@@ -2,6 +2,7 @@ package com.github.tatianepro.biblioteca.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tatianepro.biblioteca.api.dto.LoanDto;
+import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
 import com.github.tatianepro.biblioteca.api.dto.ReturnedLoanDto;
 import com.github.tatianepro.biblioteca.api.exception.BusinessException;
 import com.github.tatianepro.biblioteca.model.entity.Books;
@@ -9,6 +10,7 @@ import com.github.tatianepro.biblioteca.model.entity.Loan;
 import com.github.tatianepro.biblioteca.service.BookService;
 import com.github.tatianepro.biblioteca.service.LoanService;
 import com.github.tatianepro.biblioteca.service.LoanServiceTest;
+import org.assertj.core.api.Assertions;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -60,7 +62,8 @@ public class LoanControllerTest {
         String json = new ObjectMapper().writeValueAsString(loanDto);
 
         Books book = Books.builder().id(1L).isbn("9781234567897").build();
-        BDDMockito.given(bookService.getBookByIsbn("9781234567897")).willReturn(Optional.of(book));
+        BDDMockito.given(bookService.getBookIdByIsbn("9781234567897")).willReturn(Optional.of(1L));
+        BDDMockito.given(bookService.getReference(1L)).willReturn(book);
 
         Loan loan = Loan.builder().id(1L).customer("fulano@email.com").customer("Fulano").book(book).loanDate(LocalDate.now()).build();
         BDDMockito.given(loanService.save(Mockito.any(Loan.class))).willReturn(loan);
@@ -87,7 +90,7 @@ public class LoanControllerTest {
         LoanDto loanDto = LoanDto.builder().isbn("9781234567897").email("fulano@email.com").customer("Fulano").build();
         String json = new ObjectMapper().writeValueAsString(loanDto);
 
-        BDDMockito.given(bookService.getBookByIsbn("9781234567897")).willReturn(Optional.empty());
+        BDDMockito.given(bookService.getBookIdByIsbn("9781234567897")).willReturn(Optional.empty());
 
         //execucao
         MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders
@@ -112,7 +115,8 @@ public class LoanControllerTest {
         String json = new ObjectMapper().writeValueAsString(loanDto);
 
         Books book = Books.builder().id(1L).isbn("9781234567897").build();
-        BDDMockito.given(bookService.getBookByIsbn("9781234567897")).willReturn(Optional.of(book));
+        BDDMockito.given(bookService.getBookIdByIsbn("9781234567897")).willReturn(Optional.of(1L));
+        BDDMockito.given(bookService.getReference(1L)).willReturn(book);
 
         BDDMockito.given(loanService.save(Mockito.any(Loan.class))).willThrow(new BusinessException("Book already borrowed."));
 
@@ -151,6 +155,7 @@ public class LoanControllerTest {
                         .content(json)
                 ).andExpect( status().isOk() );
 
+        Assertions.assertThat(loan.getReturned()).isTrue();
         Mockito.verify(loanService, Mockito.times(1)).update(loan);
     }
 
@@ -182,9 +187,11 @@ public class LoanControllerTest {
         Long id = 1L;
         Loan loan = LoanServiceTest.createLoan();
         loan.setId(id);
+        LoanFilterDto loanDto = new LoanFilterDto(id, loan.getCustomer(), "fulano@email.com",
+                loan.getBook().getId(), "As aventuras", "Artur", loan.getBook().getIsbn());
 
-        BDDMockito.given(loanService.find(Mockito.any(Loan.class), Mockito.any(Pageable.class)))
-                .willReturn( new PageImpl<Loan>(Arrays.asList(loan), PageRequest.of(0, 10), 1));
+        BDDMockito.given(loanService.findDto(Mockito.any(Loan.class), Mockito.any(Pageable.class)))
+                .willReturn( new PageImpl<LoanFilterDto>(Arrays.asList(loanDto), PageRequest.of(0, 10), 1));
 
         String query = String.format("?isbn=%s&customer=%s&page=0&size=10", loan.getBook().getIsbn(), loan.getCustomer());
 
@@ -197,7 +204,9 @@ public class LoanControllerTest {
         mockMvc
                 .perform(mockRequest)
                 .andExpect( status().isOk() )
-                .andExpect( jsonPath("content", Matchers.hasSize(1)));
+                .andExpect( jsonPath("content", Matchers.hasSize(1)))
+                .andExpect( jsonPath("content[0].email").value("fulano@email.com"))
+                .andExpect( jsonPath("content[0].bookDto.isbn").value(loan.getBook().getIsbn()));
 
     }
 
@@ -0,0 +1,85 @@
+package com.github.tatianepro.biblioteca.config;
+
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+// teste de integração das metricas dos repositorios
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class RepositoryMetricsPostProcessorTest {
+
+    @TestConfiguration
+    @Import(MetricsConfig.class)
+    static class MetricsTestConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    TestEntityManager entityManagerTest;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Deve medir as consultas do repositório com sucesso.")
+    public void timeSuccessfulQueryTest() {
+        //cenario
+        entityManagerTest.persist(Books.builder().title("As aventuras").author("Artur").isbn("9781234567897").build());
+
+        //execucao
+        bookRepository.findByIsbn("9781234567897");
+        bookRepository.findByIsbn("9780000000000");
+
+        //verificacao
+        Timer timer = timer("findByIsbn", "success");
+        assertThat(timer.count()).isEqualTo(2);
+        assertThat(timer.getId().getTag("exception")).isEqualTo("none");
+    }
+
+    @Test
+    @DisplayName("Deve marcar com erro a consulta que falha.")
+    public void timeFailedQueryTest() {
+        //execucao
+        Throwable exception = catchThrowable(() -> bookRepository.findById(null));
+
+        //verificacao
+        assertThat(exception).isNotNull();
+        Timer timer = timer("findById", "error");
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.getId().getTag("exception")).isNotEqualTo("none");
+    }
+
+    private Timer timer(String method, String outcome) {
+        Timer timer = meterRegistry.find(RepositoryMetricsPostProcessor.METRIC)
+                .tag("repository", "BookRepository")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .timer();
+        assertThat(timer).isNotNull();
+        return timer;
+    }
+}
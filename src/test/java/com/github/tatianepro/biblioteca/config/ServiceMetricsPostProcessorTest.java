@@ -0,0 +1,157 @@
+package com.github.tatianepro.biblioteca.config;
+
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import com.github.tatianepro.biblioteca.service.BookService;
+import com.github.tatianepro.biblioteca.service.EmailService;
+import com.github.tatianepro.biblioteca.service.impl.BookServiceImpl;
+import com.github.tatianepro.biblioteca.service.retry.OptimisticLockRetry;
+import com.github.tatianepro.biblioteca.service.search.BookSearchIndex;
+import com.github.tatianepro.biblioteca.service.search.IsbnBloomFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.MailSendException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+//metricas da camada de servico
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class ServiceMetricsPostProcessorTest {
+
+    private static final String ISBN = "9781234567897";
+
+    @TestConfiguration
+    @Import({MetricsConfig.class, CacheConfig.class, BookServiceImpl.class, OptimisticLockRetry.class})
+    static class MetricsTestConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new CaffeineCacheManager(CacheConfig.BOOK_IDS_BY_ISBN, CacheConfig.ISBN_EXISTS);
+        }
+    }
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    @MockBean
+    BookRepository bookRepository;
+
+    @MockBean
+    BookSearchIndex bookSearchIndex;
+
+    @MockBean
+    IsbnBloomFilter isbnFilter;
+
+    @MockBean
+    EntityManager entityManager;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("Deve medir também as chamadas respondidas pelo cache.")
+    public void timeCachedCallsTest() {
+        //cenario
+        Mockito.when(bookRepository.findIdByIsbn(ISBN)).thenReturn(Optional.of(1L));
+
+        //execucao
+        bookService.getBookIdByIsbn(ISBN);
+        bookService.getBookIdByIsbn(ISBN);
+
+        //verificacao
+        Mockito.verify(bookRepository, Mockito.times(1)).findIdByIsbn(ISBN);
+        Timer timer = timer("BookService", "getBookIdByIsbn", "success");
+        assertThat(timer.count()).isEqualTo(2);
+        assertThat(timer.getId().getTag("exception")).isEqualTo("none");
+    }
+
+    @Test
+    @DisplayName("Deve marcar com erro e a exceção a chamada que falha.")
+    public void timeFailedCallTest() {
+        //cenario
+        Mockito.when(bookRepository.findById(2L)).thenThrow(new IllegalStateException("banco fora do ar"));
+
+        //execucao
+        Throwable exception = catchThrowable(() -> bookService.getById(2L));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(IllegalStateException.class);
+        Timer timer = timer("BookService", "getById", "error");
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.getId().getTag("exception")).isEqualTo("IllegalStateException");
+    }
+
+    @Test
+    @DisplayName("Deve medir o envio de emails até o futuro terminar.")
+    public void timeCompletableFutureTest() {
+        //cenario
+        PendingEmailService target = new PendingEmailService();
+        EmailService emailService = (EmailService) new ServiceMetricsPostProcessor(
+                applicationContext.getBeanProvider(MeterRegistry.class), EmailService.class)
+                .postProcessAfterInitialization(target, "emailService");
+
+        //execucao
+        CompletableFuture<Void> result = emailService.sendMails("mensagem", Collections.singletonList("fulano@email.com"));
+        assertThat(meterRegistry.find(ServiceMetricsPostProcessor.METRIC).tag("service", "EmailService").timer()).isNull();
+        target.future.completeExceptionally(new MailSendException("smtp fora do ar"));
+
+        //verificacao
+        assertThat(result).isSameAs(target.future);
+        Timer timer = timer("EmailService", "sendMails", "error");
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.getId().getTag("exception")).isEqualTo("MailSendException");
+    }
+
+    private Timer timer(String service, String method, String outcome) {
+        Timer timer = meterRegistry.find(ServiceMetricsPostProcessor.METRIC)
+                .tag("service", service)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .timer();
+        assertThat(timer).isNotNull();
+        return timer;
+    }
+
+    static class PendingEmailService implements EmailService {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        @Override
+        public CompletableFuture<Void> sendMails(String message, List<String> mailList) {
+            return future;
+        }
+    }
+}
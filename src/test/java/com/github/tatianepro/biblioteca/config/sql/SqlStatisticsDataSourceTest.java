@@ -0,0 +1,83 @@
+package com.github.tatianepro.biblioteca.config.sql;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class SqlStatisticsDataSourceTest {
+
+    DriverManagerDataSource target;
+    SqlStatisticsDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        target = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new JdbcTemplate(target).execute("create table item (id bigint primary key, name varchar(20))");
+        dataSource = new SqlStatisticsDataSource(target);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SqlStatistics.end();
+        new JdbcTemplate(target).execute("drop all objects");
+    }
+
+    @Test
+    @DisplayName("Deve contar os comandos executados e as linhas lidas.")
+    public void countStatementsAndRowsTest() {
+        //cenario
+        SqlStatistics statistics = SqlStatistics.start();
+
+        //execucao
+        jdbcTemplate.batchUpdate("insert into item (id, name) values (?, ?)",
+                Arrays.asList(new Object[]{1, "a"}, new Object[]{2, "b"}, new Object[]{3, "c"}));
+        jdbcTemplate.queryForList("select name from item", String.class);
+        jdbcTemplate.queryForList("select name from item where id = ?", String.class, 2);
+
+        //verificacao
+        assertThat(statistics.getStatements()).isEqualTo(3);
+        assertThat(statistics.getRows()).isEqualTo(4);
+        assertThat(statistics.getNanos()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Não deve instrumentar as conexões obtidas fora de uma requisição.")
+    public void noScopeTest() throws Exception {
+        //execucao
+        try (Connection connection = dataSource.getConnection()) {
+
+            //verificacao
+            assertThat(connection.getClass().getName()).doesNotContain("Proxy");
+        }
+        assertThat(SqlStatistics.current()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve expor a conexão e o data source originais.")
+    public void unwrapTest() throws Exception {
+        //cenario
+        SqlStatistics.start();
+
+        //execucao e verificacao
+        try (Connection connection = dataSource.getConnection()) {
+            assertThat(connection.unwrap(Connection.class).getClass().getName()).doesNotContain("Proxy");
+        }
+        assertThat(dataSource.unwrap(DriverManagerDataSource.class)).isSameAs(target);
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.tatianepro.biblioteca.config.sql;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class SqlStatisticsFilterTest {
+
+    SqlStatisticsProperties properties;
+    NPlusOneDetector detector;
+    MeterRegistry meterRegistry;
+    SqlStatisticsFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new SqlStatisticsProperties();
+        detector = new NPlusOneDetector(properties);
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new SqlStatisticsFilter(properties, detector, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Deve informar os comandos da requisição no cabeçalho Server-Timing e nas métricas.")
+    public void serverTimingAndMetricsTest() throws Exception {
+        //execucao
+        MockHttpServletResponse response = handle("/api/books/{id}/loans", 3, 12);
+
+        //verificacao
+        assertThat(response.getHeader(SqlStatisticsFilter.SERVER_TIMING))
+                .startsWith("db;dur=")
+                .endsWith(";desc=\"3 statements, 12 rows\"");
+        assertThat(response.getContentAsString()).isEqualTo("ok");
+        DistributionSummary statements = meterRegistry.find(SqlStatisticsFilter.STATEMENTS)
+                .tag("method", "GET").tag("uri", "/api/books/{id}/loans").summary();
+        assertThat(statements.count()).isEqualTo(1);
+        assertThat(statements.totalAmount()).isEqualTo(3);
+        assertThat(meterRegistry.find(SqlStatisticsFilter.ROWS).summary().totalAmount()).isEqualTo(12);
+        assertThat(meterRegistry.find(SqlStatisticsFilter.TIME).timer().count()).isEqualTo(1);
+        assertThat(SqlStatistics.current()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve marcar o endpoint cujos comandos crescem com as linhas lidas.")
+    public void nPlusOneTest() throws Exception {
+        //execucao: a query for the page plus one per row, each fetching one more row
+        for (int request = 0; request < properties.getSuspectMinRequests(); request++) {
+            int pageSize = request % 20;
+            handle("/api/loans", 1 + pageSize, 2L * pageSize);
+        }
+        handle("/api/loans", 21, 40);
+
+        //verificacao
+        assertThat(detector.isSuspect("GET /api/loans")).isTrue();
+        Counter counter = meterRegistry.find(SqlStatisticsFilter.N_PLUS_ONE).tag("uri", "/api/loans").counter();
+        assertThat(counter.count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Não deve marcar o endpoint com um número fixo de comandos.")
+    public void pagedEndpointTest() throws Exception {
+        //execucao: the page and the count query, whatever the size of the page
+        for (int request = 0; request < 2 * properties.getSuspectMinRequests(); request++) {
+            handle("/api/books", 2, request % 20);
+        }
+        // a cache miss among hits
+        handle("/api/books/{id}", 0, 0);
+        for (int request = 0; request < properties.getSuspectMinRequests(); request++) {
+            handle("/api/books/{id}", request % 2, request % 2);
+        }
+
+        //verificacao
+        assertThat(detector.isSuspect("GET /api/books")).isFalse();
+        assertThat(detector.isSuspect("GET /api/books/{id}")).isFalse();
+        assertThat(meterRegistry.find(SqlStatisticsFilter.N_PLUS_ONE).counter()).isNull();
+    }
+
+    @Test
+    @DisplayName("Não deve registrar a requisição que não chegou a um controller.")
+    public void unmappedRequestTest() throws Exception {
+        //execucao
+        MockHttpServletResponse response = handle(null, 0, 0);
+
+        //verificacao
+        assertThat(response.getHeader(SqlStatisticsFilter.SERVER_TIMING)).isNotNull();
+        assertThat(meterRegistry.find(SqlStatisticsFilter.STATEMENTS).summary()).isNull();
+    }
+
+    @Test
+    @DisplayName("Não deve medir as requisições quando desabilitado.")
+    public void disabledTest() throws Exception {
+        //cenario
+        properties.setEnabled(false);
+
+        //execucao
+        MockHttpServletResponse response = handle("/api/books", 2, 10);
+
+        //verificacao
+        assertThat(response.getHeader(SqlStatisticsFilter.SERVER_TIMING)).isNull();
+        assertThat(meterRegistry.find(SqlStatisticsFilter.STATEMENTS).summary()).isNull();
+    }
+
+    // plays the statements and rows of a controller through the current statistics and writes a body
+    private MockHttpServletResponse handle(String pattern, int statements, long rows) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                SqlStatistics statistics = SqlStatistics.current();
+                if (statistics != null) {
+                    for (int statement = 0; statement < statements; statement++) {
+                        statistics.statement(1_000);
+                    }
+                    for (long row = 0; row < rows; row++) {
+                        statistics.row();
+                    }
+                }
+                if (pattern != null) {
+                    req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+                }
+                resp.getWriter().write("ok");
+                resp.flushBuffer();
+            }
+        };
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+        return response;
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.tatianepro.biblioteca.model.repository;
 
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
 import com.github.tatianepro.biblioteca.model.entity.Books;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
@@ -13,12 +14,16 @@ import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 // teste de integração
 @ExtendWith(SpringExtension.class)
@@ -48,6 +53,21 @@ public class BookRepositoryTest {
         Assertions.assertThat(exists).isTrue();
     }
 
+    @Test
+    @DisplayName("Deve obter apenas o id do livro pelo ISBN.")
+    public void findIdByIsbnTest() {
+        //cenario
+        Books book = Books.builder().title("As aventuras").author("Fulano").isbn("9781234567897").build();
+        entityManagerTest.persist(book);
+
+        //execucao
+        Optional<Long> id = bookRepository.findIdByIsbn("9781234567897");
+
+        //verificacao
+        Assertions.assertThat(id).contains(book.getId());
+        Assertions.assertThat(bookRepository.findIdByIsbn("9781234567898")).isEmpty();
+    }
+
     @Test
     @DisplayName("Deve retornar false quando não existit um livro na base de dados com o ISBN informado.")
     public void returnFalseWhenIsbnDoesntExists() {
@@ -64,6 +84,19 @@ public class BookRepositoryTest {
         Assertions.assertThat(exists).isFalse();
     }
 
+    @Test
+    @DisplayName("Deve retornar, em uma consulta, os isbns já cadastrados de uma lista.")
+    public void findExistingIsbnsTest() {
+        //cenario
+        entityManagerTest.persist(createNewBook());
+
+        //execucao
+        Set<String> existingIsbns = bookRepository.findExistingIsbns(Arrays.asList("9781234567897", "9781234567898"));
+
+        //verificacao
+        Assertions.assertThat(existingIsbns).containsExactly("9781234567897");
+    }
+
     @Test
     @DisplayName("Deve obter um livro por Id.")
     public void findByIdTest() {
@@ -111,6 +144,60 @@ public class BookRepositoryTest {
 
     }
 
+    @Test
+    @DisplayName("Deve projetar um livro por Id direto no DTO.")
+    public void findDtoByIdTest() {
+        //cenario
+        Books book = createNewBook();
+        entityManagerTest.persistAndFlush(book);
+        entityManagerTest.clear();
+
+        //execucao
+        Optional<BookDto> bookDto = bookRepository.findDtoById(book.getId());
+
+        //verificacao
+        Assertions.assertThat(bookDto).contains(new BookDto(book.getId(), "As aventuras", "Fulano", "9781234567897", 0L));
+        Assertions.assertThat(entityManagerTest.getEntityManager().contains(book)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve percorrer todo o catálogo por cursor, em ordem de id.")
+    public void streamAllDtoTest() {
+        //cenario
+        Books first = entityManagerTest.persist(createNewBook());
+        Books second = entityManagerTest.persist(Books.builder().title("Outro").author("Artur").isbn("9781234567898").build());
+        entityManagerTest.flush();
+
+        //execucao
+        List<BookDto> books;
+        try (Stream<BookDto> stream = bookRepository.streamAllDto()) {
+            books = stream.collect(Collectors.toList());
+        }
+
+        //verificacao
+        Assertions.assertThat(books).extracting(BookDto::getId).containsExactly(first.getId(), second.getId());
+    }
+
+    @Test
+    @DisplayName("Deve recusar a gravação de uma cópia desatualizada do livro.")
+    public void staleVersionTest() {
+        //cenario
+        Books book = entityManagerTest.persistAndFlush(createNewBook());
+        entityManagerTest.detach(book);
+        Books current = bookRepository.findById(book.getId()).get();
+        current.setTitle("Título atual");
+        entityManagerTest.flush();
+        entityManagerTest.detach(current);
+
+        //execucao
+        book.setTitle("Título antigo");
+        Throwable exception = Assertions.catchThrowable(() -> bookRepository.saveAndFlush(book));
+
+        //verificacao
+        Assertions.assertThat(current.getVersion()).isEqualTo(book.getVersion() + 1);
+        Assertions.assertThat(exception).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+
     private Books createNewBook() {
         return Books.builder().title("As aventuras").author("Fulano").isbn("9781234567897").build();
     }
@@ -0,0 +1,157 @@
+package com.github.tatianepro.biblioteca.model.repository;
+
+import com.github.tatianepro.biblioteca.api.dto.LateLoanDto;
+import com.github.tatianepro.biblioteca.model.entity.EmailOutbox;
+import com.github.tatianepro.biblioteca.service.notice.LateLoanNotice;
+import com.github.tatianepro.biblioteca.service.notice.LateLoanNoticeTemplate;
+import com.github.tatianepro.biblioteca.service.outbox.EmailOutboxWriter;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({EmailOutboxWriter.class, LateLoanNoticeTemplate.class})
+public class EmailOutboxRepositoryTest {
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Autowired
+    private EmailOutboxWriter outboxWriter;
+
+    @Autowired
+    private LateLoanNoticeTemplate noticeTemplate;
+
+    @Autowired
+    private TestEntityManager entityManagerTest;
+
+    private int recipients;
+
+    @Test
+    @DisplayName("Deve gravar um único aviso por cliente e dia, mesmo se o job for executado de novo.")
+    public void enqueueOncePerDayTest() {
+        //cenario
+        List<LateLoanNotice> notices = Arrays.asList(
+                new LateLoanNotice("a@email.com", "Atrasado"),
+                new LateLoanNotice("b@email.com", "Atrasado"));
+        LocalDate today = LocalDate.now();
+
+        //execucao
+        int first = outboxWriter.enqueue(notices, today);
+        int rerun = outboxWriter.enqueue(notices, today);
+        int nextDay = outboxWriter.enqueue(notices, today.plusDays(1));
+
+        //verificacao
+        Assertions.assertThat(first).isEqualTo(2);
+        Assertions.assertThat(rerun).isZero();
+        Assertions.assertThat(nextDay).isEqualTo(2);
+        Assertions.assertThat(outboxRepository.countByStatus(EmailOutbox.Status.PENDING)).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Deve gravar o aviso de um cliente com muitos empréstimos de títulos longos.")
+    public void enqueueLongNoticeTest() {
+        //cenario
+        String longTitle = String.join("", Collections.nCopies(255, "a"));
+        List<LateLoanDto> loans = Collections.nCopies(noticeTemplate.getMaxItems(),
+                LateLoanDto.builder().bookTitle(longTitle).dueDate(LocalDate.now().minusDays(30)).build());
+        String message = noticeTemplate.render(longTitle, loans, 100, LocalDate.now());
+
+        //execucao
+        outboxWriter.enqueue(Collections.singletonList(new LateLoanNotice("a@email.com", message)), LocalDate.now());
+
+        //verificacao
+        Assertions.assertThat(outboxRepository.findAll()).extracting(EmailOutbox::getMessage).containsExactly(message);
+    }
+
+    @Test
+    @DisplayName("Deve listar para cada worker somente os avisos pendentes e disponíveis da sua partição.")
+    public void findClaimableIdsTest() {
+        //cenario
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutbox> notices = Arrays.asList(
+                createAndPersistNotice(EmailOutbox.Status.PENDING, now.minusMinutes(1)),
+                createAndPersistNotice(EmailOutbox.Status.PENDING, now.minusMinutes(1)),
+                createAndPersistNotice(EmailOutbox.Status.PENDING, now.minusMinutes(1)),
+                createAndPersistNotice(EmailOutbox.Status.PENDING, now.minusMinutes(1)),
+                createAndPersistNotice(EmailOutbox.Status.SENT, now.minusMinutes(1)),
+                createAndPersistNotice(EmailOutbox.Status.PENDING, now.plusMinutes(5)));
+
+        //execucao
+        List<Long> even = outboxRepository.findClaimableIds(EmailOutbox.Status.PENDING, now, 0, 2, PageRequest.of(0, 10));
+        List<Long> odd = outboxRepository.findClaimableIds(EmailOutbox.Status.PENDING, now, 1, 2, PageRequest.of(0, 10));
+
+        //verificacao
+        List<Long> ready = notices.subList(0, 4).stream().map(EmailOutbox::getId).collect(Collectors.toList());
+        Assertions.assertThat(even).allMatch(id -> id % 2 == 0);
+        Assertions.assertThat(odd).allMatch(id -> id % 2 == 1);
+        Assertions.assertThat(even).doesNotContainAnyElementsOf(odd);
+        Assertions.assertThat(even.size() + odd.size()).isEqualTo(4);
+        Assertions.assertThat(ready).containsAll(even).containsAll(odd);
+    }
+
+    @Test
+    @DisplayName("Um aviso já reservado por um worker não deve ser reservado por outro.")
+    public void claimOnlyPendingTest() {
+        //cenario
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = Arrays.asList(
+                createAndPersistNotice(EmailOutbox.Status.PENDING, now).getId(),
+                createAndPersistNotice(EmailOutbox.Status.PENDING, now).getId());
+
+        //execucao
+        int first = outboxRepository.claim(ids, "worker-a", EmailOutbox.Status.PENDING, EmailOutbox.Status.PROCESSING, now);
+        int second = outboxRepository.claim(ids, "worker-b", EmailOutbox.Status.PENDING, EmailOutbox.Status.PROCESSING, now);
+
+        //verificacao
+        Assertions.assertThat(first).isEqualTo(2);
+        Assertions.assertThat(second).isZero();
+        Assertions.assertThat(outboxRepository.findByClaimedByAndStatus("worker-a", EmailOutbox.Status.PROCESSING)).hasSize(2);
+        Assertions.assertThat(outboxRepository.findByClaimedByAndStatus("worker-b", EmailOutbox.Status.PROCESSING)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve devolver para pendente os avisos reservados por um worker que não terminou o envio.")
+    public void requeueExpiredTest() {
+        //cenario
+        LocalDateTime now = LocalDateTime.now();
+        EmailOutbox abandoned = createAndPersistNotice(EmailOutbox.Status.PENDING, now);
+        EmailOutbox inProgress = createAndPersistNotice(EmailOutbox.Status.PENDING, now);
+        outboxRepository.claim(Arrays.asList(abandoned.getId()), "crashed", EmailOutbox.Status.PENDING,
+                EmailOutbox.Status.PROCESSING, now.minusHours(1));
+        outboxRepository.claim(Arrays.asList(inProgress.getId()), "alive", EmailOutbox.Status.PENDING,
+                EmailOutbox.Status.PROCESSING, now);
+
+        //execucao
+        int requeued = outboxRepository.requeueExpired(EmailOutbox.Status.PROCESSING, EmailOutbox.Status.PENDING,
+                now.minusMinutes(10));
+
+        //verificacao
+        Assertions.assertThat(requeued).isEqualTo(1);
+        Assertions.assertThat(outboxRepository.findById(abandoned.getId()).get().getStatus()).isEqualTo(EmailOutbox.Status.PENDING);
+        Assertions.assertThat(outboxRepository.findById(inProgress.getId()).get().getStatus()).isEqualTo(EmailOutbox.Status.PROCESSING);
+    }
+
+    private EmailOutbox createAndPersistNotice(EmailOutbox.Status status, LocalDateTime availableAt) {
+        EmailOutbox notice = EmailOutbox.builder().recipient("fulano" + (++recipients) + "@email.com")
+                .message("Atrasado").noticeDate(LocalDate.now()).status(status).availableAt(availableAt).build();
+        return entityManagerTest.persist(notice);
+    }
+}
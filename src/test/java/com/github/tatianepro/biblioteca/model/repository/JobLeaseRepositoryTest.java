@@ -0,0 +1,68 @@
+package com.github.tatianepro.biblioteca.model.repository;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// the 'late-loans' row comes from the V6 migration
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class JobLeaseRepositoryTest {
+
+    private static final String JOB = "late-loans";
+
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Test
+    @DisplayName("Somente um nó deve obter o lease por dia.")
+    public void acquireOncePerDayTest() {
+        //cenario
+        LocalDate today = LocalDate.now();
+        LocalDateTime now = LocalDateTime.now();
+
+        //execucao
+        int first = jobLeaseRepository.acquire(JOB, "node-a", today, now, now.plusMinutes(10));
+        int second = jobLeaseRepository.acquire(JOB, "node-b", today, now, now.plusMinutes(10));
+        jobLeaseRepository.complete(JOB, "node-a", today);
+        int afterCompleted = jobLeaseRepository.acquire(JOB, "node-b", today, now.plusMinutes(20), now.plusMinutes(30));
+        int tomorrow = jobLeaseRepository.acquire(JOB, "node-b", today.plusDays(1), now.plusDays(1), now.plusDays(1).plusMinutes(10));
+
+        //verificacao
+        Assertions.assertThat(first).isEqualTo(1);
+        Assertions.assertThat(second).isZero();
+        Assertions.assertThat(afterCompleted).isZero();
+        Assertions.assertThat(tomorrow).isEqualTo(1);
+        Assertions.assertThat(jobLeaseRepository.findById(JOB).get().getOwner()).isEqualTo("node-b");
+    }
+
+    @Test
+    @DisplayName("Outro nó deve assumir a execução quando o lease expirar sem ser concluído.")
+    public void takeOverExpiredLeaseTest() {
+        //cenario
+        LocalDate today = LocalDate.now();
+        LocalDateTime now = LocalDateTime.now();
+        int nobodyStarted = jobLeaseRepository.takeOver(JOB, "node-b", today, now, now.plusMinutes(10));
+        jobLeaseRepository.acquire(JOB, "node-a", today, now, now.plusMinutes(10));
+
+        //execucao
+        int beforeExpiry = jobLeaseRepository.takeOver(JOB, "node-b", today, now.plusMinutes(5), now.plusMinutes(15));
+        int afterExpiry = jobLeaseRepository.takeOver(JOB, "node-b", today, now.plusMinutes(11), now.plusMinutes(21));
+        int lateComplete = jobLeaseRepository.complete(JOB, "node-a", today);
+
+        //verificacao
+        Assertions.assertThat(nobodyStarted).isZero();
+        Assertions.assertThat(beforeExpiry).isZero();
+        Assertions.assertThat(afterExpiry).isEqualTo(1);
+        Assertions.assertThat(lateComplete).isZero();
+    }
+}
@@ -1,25 +1,33 @@
 package com.github.tatianepro.biblioteca.model.repository;
 
+import com.github.tatianepro.biblioteca.api.dto.LateLoanDto;
+import com.github.tatianepro.biblioteca.api.dto.LoanFilterDto;
 import com.github.tatianepro.biblioteca.model.entity.Books;
 import com.github.tatianepro.biblioteca.model.entity.Loan;
 import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 public class LoanRepositoryTest {
 
     @Autowired
@@ -61,38 +69,227 @@ public class LoanRepositoryTest {
     }
 
     @Test
-    @DisplayName("Deve retornar empréstimos cuja data empréstimo for menor que ou igual a três dias atrás e não retornados.")
-    public void findByLoanDateLessThanAndNotReturned() {   // com prazo de vencimento expirado
+    @DisplayName("Deve projetar empréstimos pelo isbn do livro ou customer direto no DTO")
+    public void findDtoByBookIsbnOrCustomerTest() {
+        //cenario
+        Loan loan = createandPersistLoan(LocalDate.now());
+
+        //execucao
+        Page<LoanFilterDto> pageLoan = loanRepository.findDtoByBookIsbnOrCustomer(
+                "9781234567897", "Fulano", PageRequest.of(0, 10));
+
+        //verificacao
+        Assertions.assertThat(pageLoan.getTotalElements()).isEqualTo(1);
+        LoanFilterDto loanDto = pageLoan.getContent().get(0);
+        Assertions.assertThat(loanDto.getId()).isEqualTo(loan.getId());
+        Assertions.assertThat(loanDto.getCustomer()).isEqualTo("Fulano");
+        Assertions.assertThat(loanDto.getEmail()).isEqualTo("fulano@email.com");
+        Assertions.assertThat(loanDto.getBookDto().getId()).isEqualTo(loan.getBook().getId());
+        Assertions.assertThat(loanDto.getBookDto().getIsbn()).isEqualTo("9781234567897");
+    }
+
+    @Test
+    @DisplayName("Deve contar os empréstimos com vencimento anterior a hoje e não retornados.")
+    public void countLateLoansTest() {   // com prazo de vencimento expirado
         //cenario
         Loan loan = createandPersistLoan(LocalDate.now().minusDays(5));
+        Books returnedBook = Books.builder().title("Devolvido").author("Artur").isbn("9781234567898").build();
+        entityManagerTest.persist(returnedBook);
+        persistLoan(returnedBook, LocalDate.now().minusDays(10), true);
 
         //execucao
-        List<Loan> result = loanRepository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
+        long late = loanRepository.countLateLoans(LocalDate.now());
+        long open = loanRepository.countOpenLoans();
 
         //verificacao
-        Assertions.assertThat(result).hasSize(1).contains(loan);
+        Assertions.assertThat(late).isEqualTo(1);
+        Assertions.assertThat(open).isEqualTo(1);
+        Assertions.assertThat(loan.getDueDate()).isBefore(LocalDate.now());
     }
 
     @Test
-    @DisplayName("Deve retornar vazio quando não houver empréstimos atrasados.")
-    public void notFindByLoanDateLessThanAndNotReturned() {
+    @DisplayName("Deve retornar zero quando não houver empréstimos atrasados.")
+    public void countNoLateLoansTest() {
         //cenario
-        Loan loan = createandPersistLoan(LocalDate.now());
+        createandPersistLoan(LocalDate.now());
 
         //execucao
-        List<Loan> result = loanRepository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
+        long late = loanRepository.countLateLoans(LocalDate.now());
 
         //verificacao
-        Assertions.assertThat(result).isEmpty();
+        Assertions.assertThat(late).isZero();
     }
 
+    @Test
+    @DisplayName("Deve paginar o histórico de empréstimos de um livro por cursor (loanDate, id).")
+    public void findByBookAfterTest() {
+        //cenario
+        // a book has one open loan at most, the older ones are returned
+        Loan first = createandPersistLoan(LocalDate.now().minusDays(2));
+        first.setReturned(true);
+        entityManagerTest.flush();
+        Books book = first.getBook();
+        Loan second = persistLoan(book, LocalDate.now().minusDays(1), true);
+        persistLoan(book, null, true);
+        Loan third = persistLoan(book, LocalDate.now().minusDays(1));
+
+        //execucao
+        Slice<Loan> firstSlice = loanRepository.findByBookAndLoanDateNotNullOrderByLoanDateDescIdDesc(book, PageRequest.of(0, 2));
+        Loan last = firstSlice.getContent().get(1);
+        Slice<Loan> secondSlice = loanRepository.findByBookAfter(book, last.getLoanDate(), last.getId(), PageRequest.of(0, 2));
+
+        //verificacao
+        Assertions.assertThat(firstSlice.getContent()).containsExactly(third, second);
+        Assertions.assertThat(firstSlice.hasNext()).isTrue();
+        Assertions.assertThat(secondSlice.getContent()).containsExactly(first);
+        Assertions.assertThat(secondSlice.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve buscar uma página de empréstimos com número constante de consultas, qualquer que seja o tamanho.")
+    public void findByBookIsbnOrCustomerStatementCountTest() {
+        //cenario
+        for (int i = 0; i < 10; i++) {
+            Books book = Books.builder().title("Livro " + i).author("Autor").isbn("97812345678" + i).build();
+            entityManagerTest.persist(book);
+            persistLoan(book, LocalDate.now());
+        }
+        entityManagerTest.flush();
+
+        //execucao
+        long smallPageStatements = countStatements(() -> loanRepository.findByBookIsbnOrCustomer("0", "Fulano", PageRequest.of(0, 2)));
+        long largePageStatements = countStatements(() -> loanRepository.findByBookIsbnOrCustomer("0", "Fulano", PageRequest.of(0, 8)));
+        Books firstBook = entityManagerTest.find(Books.class, loanRepository.findAll().get(0).getBook().getId());
+        long bookPageStatements = countStatements(() -> loanRepository.findByBook(firstBook, PageRequest.of(0, 8)));
+
+        //verificacao
+        Assertions.assertThat(smallPageStatements).isEqualTo(2);     // page + count
+        Assertions.assertThat(largePageStatements).isEqualTo(smallPageStatements);
+        Assertions.assertThat(bookPageStatements).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve percorrer os empréstimos atrasados em lotes ordenados por email do cliente e id")
+    public void findLateLoansAfterTest() {
+        //cenario
+        Loan first = createandPersistLoan(LocalDate.now().minusDays(5));
+        Books otherBook = Books.builder().title("Outro").author("Artur").isbn("9781234567898").build();
+        entityManagerTest.persist(otherBook);
+        Loan second = persistLoan(otherBook, LocalDate.now().minusDays(10));
+        Books onTimeBook = Books.builder().title("Em dia").author("Artur").isbn("9781234567899").build();
+        entityManagerTest.persist(onTimeBook);
+        persistLoan(onTimeBook, LocalDate.now());
+        Books otherCustomerBook = Books.builder().title("Mais um").author("Artur").isbn("9781234567800").build();
+        entityManagerTest.persist(otherCustomerBook);
+        Loan otherCustomer = Loan.builder().customerEmail("beltrano@email.com").customer("Beltrano").book(otherCustomerBook)
+                .loanDate(LocalDate.now().minusDays(6)).dueDate(LocalDate.now().minusDays(2)).build();
+        entityManagerTest.persist(otherCustomer);
+        LocalDate lateDate = LocalDate.now();
+
+        //execucao
+        Slice<LateLoanDto> firstChunk = loanRepository.findLateLoansAfter(lateDate, "", 0L, PageRequest.of(0, 2));
+        LateLoanDto last = firstChunk.getContent().get(1);
+        Slice<LateLoanDto> secondChunk = loanRepository.findLateLoansAfter(lateDate, last.getCustomerEmail(), last.getId(),
+                PageRequest.of(0, 2));
+
+        //verificacao
+        Assertions.assertThat(firstChunk.getContent()).extracting(LateLoanDto::getId)
+                .containsExactly(otherCustomer.getId(), first.getId());
+        Assertions.assertThat(firstChunk.hasNext()).isTrue();
+        Assertions.assertThat(firstChunk.getContent().get(1).getBookTitle()).isEqualTo("As aventuras");
+        Assertions.assertThat(secondChunk.getContent()).extracting(LateLoanDto::getId).containsExactly(second.getId());
+        Assertions.assertThat(secondChunk.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve recusar um segundo empréstimo em aberto do mesmo livro")
+    public void uniqueOpenLoanPerBookTest() {
+        //cenario
+        Loan open = createandPersistLoan(LocalDate.now().minusDays(1));
+        Loan second = Loan.builder().customerEmail("beltrano@email.com").customer("Beltrano").book(open.getBook())
+                .loanDate(LocalDate.now()).build();
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> loanRepository.saveAndFlush(second));
+
+        //verificacao
+        Assertions.assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    @DisplayName("Deve verificar se outro empréstimo do livro está em aberto")
+    public void existsOtherOpenLoanTest() {
+        //cenario
+        Loan returned = createandPersistLoan(LocalDate.now().minusDays(2));
+        returned.setReturned(true);
+        entityManagerTest.flush();
+        Loan open = persistLoan(returned.getBook(), LocalDate.now());
+
+        //execucao
+        Boolean otherThanReturned = loanRepository.existsOtherOpenLoan(returned.getBook(), returned.getId());
+        Boolean otherThanOpen = loanRepository.existsOtherOpenLoan(returned.getBook(), open.getId());
+
+        //verificacao
+        Assertions.assertThat(otherThanReturned).isTrue();
+        Assertions.assertThat(otherThanOpen).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve listar os ids dos livros com empréstimo em aberto")
+    public void streamBorrowedBookIdsTest() {
+        //cenario
+        Loan open = createandPersistLoan(LocalDate.now());
+        Books returnedBook = Books.builder().title("Outro").author("Artur").isbn("9781234567898").build();
+        entityManagerTest.persist(returnedBook);
+        Loan returned = persistLoan(returnedBook, LocalDate.now());
+        returned.setReturned(true);
+        entityManagerTest.flush();
+
+        //execucao
+        List<Long> bookIds;
+        try (Stream<Long> stream = loanRepository.streamBorrowedBookIds()) {
+            bookIds = stream.collect(Collectors.toList());
+        }
+
+        //verificacao
+        Assertions.assertThat(bookIds).containsExactly(open.getBook().getId());
+    }
+
+    // runs the query on an empty persistence context and touches every book, as the controllers do
+    private long countStatements(java.util.function.Supplier<? extends Iterable<Loan>> query) {
+        entityManagerTest.clear();
+        Statistics statistics = entityManagerTest.getEntityManager()
+                .getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+        query.get().forEach(loan -> loan.getBook().getTitle());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Loan persistLoan(Books book, LocalDate loandate) {
+        return persistLoan(book, loandate, null);
+    }
+
+    private Loan persistLoan(Books book, LocalDate loandate, Boolean returned) {
+        Loan loan = Loan.builder().customerEmail("fulano@email.com").customer("Fulano").book(book).loanDate(loandate)
+                .dueDate(dueDate(loandate)).returned(returned).build();
+        entityManagerTest.persist(loan);
+        return loan;
+    }
 
     private Loan createandPersistLoan(LocalDate loandate) {
         Books book = Books.builder().title("As aventuras").author("Richardson").isbn("9781234567897").build();
         entityManagerTest.persist(book);
-        Loan loan = Loan.builder().customerEmail("fulano@email.com").customer("Fulano").book(book).loanDate(loandate).build();
+        Loan loan = Loan.builder().customerEmail("fulano@email.com").customer("Fulano").book(book).loanDate(loandate)
+                .dueDate(dueDate(loandate)).build();
         entityManagerTest.persist(loan);
         return loan;
     }
 
+    // the due date LoanServiceImpl stores with a new loan
+    private LocalDate dueDate(LocalDate loandate) {
+        return loandate == null ? null : loandate.plusDays(4);
+    }
+
 }
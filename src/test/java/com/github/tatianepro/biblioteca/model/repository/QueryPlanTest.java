@@ -0,0 +1,133 @@
+package com.github.tatianepro.biblioteca.model.repository;
+
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import org.assertj.core.api.Assertions;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs each repository query, captures the SQL hibernate sent and asks H2 for its plan
+ * with the same parameters: the plan names the index used, or {@code tableScan}.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.github.tatianepro.biblioteca.model.repository.QueryPlanTest$SqlCapture")
+public class QueryPlanTest {
+
+    // H2 picks either ix_loan_book_returned or the index it creates for the id_book foreign key
+    private static final String BOOK_INDEX = "PUBLIC\\.(IX_LOAN_BOOK_RETURNED|FK_LOAN_BOOK_INDEX_\\w+): ID_BOOK = ";
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private TestEntityManager entityManagerTest;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Books book;
+
+    @BeforeEach
+    public void setUp() {
+        book = entityManagerTest.persistAndFlush(
+                Books.builder().title("As aventuras").author("Artur").isbn("9781234567897").build());
+        SqlCapture.STATEMENTS.clear();
+    }
+
+    @Test
+    @DisplayName("Deve usar o índice único de isbn nas consultas por isbn")
+    public void isbnQueriesUseIndexTest() {
+        Assertions.assertThat(plan(() -> bookRepository.existsByIsbn("9781234567897"), "9781234567897"))
+                .contains("UX_BOOKS_ISBN");
+        Assertions.assertThat(plan(() -> bookRepository.findByIsbn("9781234567897"), "9781234567897"))
+                .contains("UX_BOOKS_ISBN");
+        Assertions.assertThat(plan(() -> bookRepository.findExistingIsbns(Arrays.asList("1", "2")), "1", "2"))
+                .contains("UX_BOOKS_ISBN");
+    }
+
+    @Test
+    @DisplayName("Deve usar um índice de id_book para verificar se o livro está emprestado")
+    public void existsByBookAndNotReturnedUsesIndexTest() {
+        Assertions.assertThat(plan(() -> loanRepository.existsByBookAndNotReturned(book), book.getId()))
+                .containsPattern(BOOK_INDEX)
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Deve usar o índice (due_date, returned) para buscar os empréstimos atrasados")
+    public void lateLoansUseIndexTest() {
+        LocalDate date = LocalDate.now();
+        Assertions.assertThat(plan(() -> loanRepository.countLateLoans(date), date))
+                .contains("IX_LOAN_DUE_DATE_RETURNED")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Não deve varrer a tabela de empréstimos ao ler os lotes de empréstimos atrasados")
+    public void lateLoanChunksUseIndexTest() {
+        LocalDate date = LocalDate.now();
+        Assertions.assertThat(plan(() -> loanRepository.findLateLoansAfter(date, "", 0L, PageRequest.of(0, 500)),
+                date, "", "", 0L, 501))
+                .doesNotContain("LOAN.tableScan");
+    }
+
+    /*
+     * H2 cannot combine two indexes for an 'or' over different tables, so the query itself scans
+     * the loans; each side of the 'or' is checked on its own (databases with bitmap/index merge scans
+     * combine them).
+     */
+    @Test
+    @DisplayName("Deve ter índice para cada lado da busca por isbn ou customer")
+    public void bookIsbnOrCustomerPredicatesUseIndexTest() {
+        Assertions.assertThat(explain("select l.id from loan l inner join books b on l.id_book = b.id where b.isbn = ?",
+                "9781234567897"))
+                .contains("UX_BOOKS_ISBN")
+                .containsPattern(BOOK_INDEX)
+                .doesNotContain("tableScan");
+        Assertions.assertThat(explain("select l.id from loan l where l.customer = ?", "Fulano"))
+                .contains("IX_LOAN_CUSTOMER")
+                .doesNotContain("tableScan");
+    }
+
+    private String plan(Runnable query, Object... parameters) {
+        SqlCapture.STATEMENTS.clear();
+        query.run();
+        Assertions.assertThat(SqlCapture.STATEMENTS).hasSize(1);
+        return explain(SqlCapture.STATEMENTS.get(0), parameters);
+    }
+
+    private String explain(String sql, Object... parameters) {
+        return jdbcTemplate.queryForObject("explain " + sql, String.class, parameters);
+    }
+
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.github.tatianepro.biblioteca.service;
+
+import com.github.tatianepro.biblioteca.api.dto.BookDto;
+import com.github.tatianepro.biblioteca.api.dto.CatalogImportDto;
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import com.github.tatianepro.biblioteca.service.impl.BookCatalogServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookCatalogServiceTest {
+
+    BookCatalogService bookCatalogService;
+
+    @MockBean
+    BookRepository bookRepository;
+
+    @MockBean
+    BookService bookService;
+
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        this.bookCatalogService = new BookCatalogServiceImpl(bookRepository, bookService, validator, meterRegistry, 2, 1, 1, 100);
+    }
+
+    @Test
+    @DisplayName("Deve exportar o catálogo em NDJSON, um livro por linha.")
+    public void exportNdjsonTest() throws Exception {
+        //cenario
+        Mockito.when(bookRepository.streamAllDto()).thenReturn(Stream.of(createBooks()));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //execucao
+        long exported = bookCatalogService.export(CatalogFormat.NDJSON, outputStream);
+
+        //verificacao
+        assertThat(exported).isEqualTo(2);
+        assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "{\"id\":1,\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"9781234567897\"}\n" +
+                "{\"id\":2,\"title\":\"Contos, \\\"crônicas\\\"\",\"author\":\"Fulano\",\"isbn\":\"9781234567898\"}\n");
+    }
+
+    @Test
+    @DisplayName("Deve exportar o catálogo em CSV, escapando separadores e aspas.")
+    public void exportCsvTest() throws Exception {
+        //cenario
+        Mockito.when(bookRepository.streamAllDto()).thenReturn(Stream.of(createBooks()));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //execucao
+        bookCatalogService.export(CatalogFormat.CSV, outputStream);
+
+        //verificacao
+        assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "id,title,author,isbn\n" +
+                "1,As aventuras,Artur,9781234567897\n" +
+                "2,\"Contos, \"\"crônicas\"\"\",Fulano,9781234567898\n");
+    }
+
+    @Test
+    @DisplayName("Deve importar o catálogo em lotes, ignorando registros inválidos e isbns duplicados.")
+    public void importCatalogTest() throws Exception {
+        //cenario
+        String file = "{\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"001\"}\n" +
+                "{\"title\":\"Contos\",\"author\":\"Fulano\",\"isbn\":\"002\"}\n" +
+                "\n" +
+                "{\"title\":\"Sem autor\",\"isbn\":\"003\"}\n" +
+                "{nao e json\n" +
+                "{\"title\":\"Repetido\",\"author\":\"Artur\",\"isbn\":\"001\"}\n";
+        List<List<String>> chunks = new ArrayList<>();
+        Mockito.when(bookService.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Books> books = invocation.getArgument(0);
+            chunks.add(books.stream().map(Books::getIsbn).collect(Collectors.toList()));
+            return books.stream().filter(book -> !book.getTitle().equals("Repetido")).collect(Collectors.toList());
+        });
+
+        //execucao
+        CatalogImportDto result = bookCatalogService.importCatalog(CatalogFormat.NDJSON,
+                new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)));
+
+        //verificacao
+        assertThat(chunks).containsExactly(Arrays.asList("001", "002"), Collections.singletonList("001"));
+        assertThat(result.getRead()).isEqualTo(5);
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getDuplicated()).isEqualTo(1);
+        assertThat(result.getInvalid()).isEqualTo(2);
+        assertThat(meterRegistry.counter("biblioteca.catalog.import.books", "outcome", "created").count()).isEqualTo(2);
+        assertThat(meterRegistry.timer("biblioteca.catalog.import.chunk").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve importar um catálogo em CSV exportado pela própria API.")
+    public void importCsvTest() throws Exception {
+        //cenario
+        String file = "id,title,author,isbn\n" +
+                "1,As aventuras,Artur,001\n" +
+                "2,\"Contos, \"\"crônicas\"\"\nem duas linhas\",Fulano,002\n";
+        List<Books> saved = new ArrayList<>();
+        Mockito.when(bookService.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Books> books = invocation.getArgument(0);
+            saved.addAll(books);
+            return books;
+        });
+
+        //execucao
+        CatalogImportDto result = bookCatalogService.importCatalog(CatalogFormat.CSV,
+                new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)));
+
+        //verificacao
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(saved).extracting(Books::getId).containsOnlyNulls();
+        assertThat(saved).extracting(Books::getTitle).containsExactly("As aventuras", "Contos, \"crônicas\"\nem duas linhas");
+    }
+
+    @Test
+    @DisplayName("Deve contar como inválido o registro maior que o limite e continuar na linha seguinte.")
+    public void importOversizedRecordTest() throws Exception {
+        //cenario: max-record-length is 100
+        String longTitle = String.join("", Collections.nCopies(120, "a"));
+        String ndjson = "{\"title\":\"" + longTitle + "\",\"author\":\"Artur\",\"isbn\":\"001\"}\n" +
+                "{\"title\":\"Contos\",\"author\":\"Fulano\",\"isbn\":\"002\"}\n";
+        String csv = "id,title,author,isbn\n" +
+                "1,\"Aspas sem fim,Artur,001\n" +
+                longTitle + "\n" +
+                "3,Contos,Fulano,003\n";
+        List<Books> saved = new ArrayList<>();
+        Mockito.when(bookService.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Books> books = invocation.getArgument(0);
+            saved.addAll(books);
+            return books;
+        });
+
+        //execucao
+        CatalogImportDto ndjsonResult = bookCatalogService.importCatalog(CatalogFormat.NDJSON,
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+        CatalogImportDto csvResult = bookCatalogService.importCatalog(CatalogFormat.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        //verificacao
+        assertThat(ndjsonResult.getRead()).isEqualTo(2);
+        assertThat(ndjsonResult.getInvalid()).isEqualTo(1);
+        assertThat(csvResult.getRead()).isEqualTo(2);
+        assertThat(csvResult.getInvalid()).isEqualTo(1);
+        assertThat(saved).extracting(Books::getIsbn).containsExactly("002", "003");
+        assertThat(meterRegistry.counter("biblioteca.catalog.import.books", "outcome", "invalid").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve interromper a leitura quando a gravação de um lote falhar.")
+    public void importCatalogWriterFailureTest() {
+        //cenario
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            file.append("{\"title\":\"Livro\",\"author\":\"Artur\",\"isbn\":\"").append(i).append("\"}\n");
+        }
+        Mockito.when(bookService.saveAll(Mockito.anyList())).thenThrow(new IllegalStateException("banco fora do ar"));
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> bookCatalogService.importCatalog(CatalogFormat.NDJSON,
+                new ByteArrayInputStream(file.toString().getBytes(StandardCharsets.UTF_8))));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(IllegalStateException.class).hasMessage("banco fora do ar");
+        Mockito.verify(bookService, Mockito.times(1)).saveAll(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("Deve recusar a importação além do limite de importações simultâneas.")
+    public void importCatalogConcurrencyLimitTest() throws Exception {
+        //cenario
+        String file = "{\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"001\"}\n";
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(bookService.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        });
+        CompletableFuture<CatalogImportDto> running = CompletableFuture.supplyAsync(() -> importNdjson(file));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> importNdjson(file));
+        release.countDown();
+
+        //verificacao
+        assertThat(exception).isInstanceOf(ResponseStatusException.class);
+        assertThat(((ResponseStatusException) exception).getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(running.get(5, TimeUnit.SECONDS).getCreated()).isEqualTo(1);
+        assertThat(importNdjson(file).getCreated()).isEqualTo(1);
+    }
+
+    private CatalogImportDto importNdjson(String file) {
+        try {
+            return bookCatalogService.importCatalog(CatalogFormat.NDJSON, new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private BookDto[] createBooks() {
+        return new BookDto[]{
+                new BookDto(1L, "As aventuras", "Artur", "9781234567897"),
+                new BookDto(2L, "Contos, \"crônicas\"", "Fulano", "9781234567898")
+        };
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.tatianepro.biblioteca.service;
+
+import com.github.tatianepro.biblioteca.config.CacheConfig;
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import com.github.tatianepro.biblioteca.service.impl.BookServiceImpl;
+import com.github.tatianepro.biblioteca.service.retry.OptimisticLockRetry;
+import com.github.tatianepro.biblioteca.service.search.BookSearchIndex;
+import com.github.tatianepro.biblioteca.service.search.IsbnBloomFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//cache de livros por isbn
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookServiceCacheTest {
+
+    private static final String ISBN = "9781234567897";
+
+    @TestConfiguration
+    @Import({CacheConfig.class, BookServiceImpl.class, OptimisticLockRetry.class})
+    static class CacheTestConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new CaffeineCacheManager(CacheConfig.BOOK_IDS_BY_ISBN, CacheConfig.ISBN_EXISTS);
+        }
+    }
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @MockBean
+    BookRepository bookRepository;
+
+    @MockBean
+    BookSearchIndex bookSearchIndex;
+
+    @MockBean
+    IsbnBloomFilter isbnFilter;
+
+    @MockBean
+    EntityManager entityManager;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    @DisplayName("Deve consultar o banco uma única vez para o mesmo isbn.")
+    public void getBookIdByIsbnCachedTest() {
+        //cenario
+        Mockito.when(bookRepository.findIdByIsbn(ISBN)).thenReturn(Optional.of(1L));
+
+        //execucao
+        bookService.getBookIdByIsbn(ISBN);
+        Optional<Long> idFound = bookService.getBookIdByIsbn(ISBN);
+
+        //verificacao
+        assertThat(idFound).contains(1L);
+        Mockito.verify(bookRepository, Mockito.times(1)).findIdByIsbn(ISBN);
+    }
+
+    @Test
+    @DisplayName("Não deve guardar em cache um isbn inexistente.")
+    public void getBookIdByIsbnNotFoundNotCachedTest() {
+        //cenario
+        Mockito.when(bookRepository.findIdByIsbn(ISBN)).thenReturn(Optional.empty());
+
+        //execucao
+        bookService.getBookIdByIsbn(ISBN);
+        Optional<Long> idFound = bookService.getBookIdByIsbn(ISBN);
+
+        //verificacao
+        assertThat(idFound).isEmpty();
+        Mockito.verify(bookRepository, Mockito.times(2)).findIdByIsbn(ISBN);
+    }
+
+    @Test
+    @DisplayName("Deve guardar em cache apenas o id do livro, nunca a entidade.")
+    public void cachedValueIsIdTest() {
+        //cenario
+        Mockito.when(bookRepository.findIdByIsbn(ISBN)).thenReturn(Optional.of(1L));
+
+        //execucao
+        bookService.getBookIdByIsbn(ISBN);
+
+        //verificacao
+        assertThat(cacheManager.getCache(CacheConfig.BOOK_IDS_BY_ISBN).get(ISBN).get()).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Deve manter o id em cache ao atualizar e invalidá-lo ao deletar um livro.")
+    public void updateKeepsAndDeleteEvictsTest() {
+        //cenario
+        Books book = createBook();
+        Mockito.when(bookRepository.findIdByIsbn(ISBN)).thenReturn(Optional.of(1L));
+        Mockito.when(bookRepository.save(book)).thenReturn(book);
+
+        //execucao
+        bookService.getBookIdByIsbn(ISBN);
+        bookService.update(book);
+        bookService.getBookIdByIsbn(ISBN);
+        bookService.delete(book);
+        bookService.getBookIdByIsbn(ISBN);
+
+        //verificacao
+        Mockito.verify(bookRepository, Mockito.times(2)).findIdByIsbn(ISBN);
+    }
+
+    private Books createBook() {
+        return Books.builder().id(1L).title("As aventuras").author("Artur").isbn(ISBN).build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.tatianepro.biblioteca.service;
+
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import com.github.tatianepro.biblioteca.service.impl.BookServiceImpl;
+import com.github.tatianepro.biblioteca.service.retry.OptimisticLockRetry;
+import com.github.tatianepro.biblioteca.service.search.BookSearchIndex;
+import com.github.tatianepro.biblioteca.service.search.IsbnBloomFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// teste de integração do lote: cada parte commita na sua própria transação, fora da transação do teste
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ BookServiceImpl.class, BookSearchIndex.class, IsbnBloomFilter.class, OptimisticLockRetry.class })
+public class BookServiceIntegrationTest {
+
+    @TestConfiguration
+    static class MetricsTestConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    IsbnBloomFilter isbnFilter;
+
+    @AfterEach
+    public void tearDown() {
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deve reportar como duplicado o ISBN gravado por outra instância sem desfazer o resto do lote.")
+    public void saveAllIsbnRegisteredBehindTheFilterTest() {
+        //cenario: the filter is built empty, then another instance registers an isbn of the batch
+        isbnFilter.rebuild();
+        bookRepository.saveAndFlush(Books.builder().title("Outra instância").author("Fulano").isbn("9781234567898").build());
+        Books newBook = Books.builder().title("As aventuras").author("Artur").isbn("9781234567897").build();
+        Books registeredBook = Books.builder().title("Aventuras no deserto").author("Artur").isbn("9781234567898").build();
+
+        //execucao
+        List<Books> savedBooks = bookService.saveAll(Arrays.asList(newBook, registeredBook));
+
+        //verificacao
+        assertThat(savedBooks).containsExactly(newBook);
+        assertThat(newBook.getId()).isNotNull();
+        assertThat(registeredBook.getId()).isNull();
+        assertThat(bookRepository.count()).isEqualTo(2);
+        assertThat(bookRepository.findByIsbn("9781234567898")).get()
+                .extracting(Books::getTitle).isEqualTo("Outra instância");
+        assertThat(isbnFilter.mightContain("9781234567898")).isTrue();
+    }
+}
@@ -4,6 +4,11 @@ import com.github.tatianepro.biblioteca.api.exception.BusinessException;
 import com.github.tatianepro.biblioteca.model.entity.Books;
 import com.github.tatianepro.biblioteca.model.repository.BookRepository;
 import com.github.tatianepro.biblioteca.service.impl.BookServiceImpl;
+import com.github.tatianepro.biblioteca.service.retry.OptimisticLockRetry;
+import com.github.tatianepro.biblioteca.service.search.BookSearchIndex;
+import com.github.tatianepro.biblioteca.service.search.IsbnBloomFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -11,16 +16,22 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.Example;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 
+import javax.persistence.EntityManager;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -35,9 +46,14 @@ public class BookServiceTest {
     @MockBean
     BookRepository bookRepository;
 
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @BeforeEach
     public void setUp() {
-        this.bookService = new BookServiceImpl( bookRepository );
+        this.bookService = new BookServiceImpl( bookRepository, new BookSearchIndex( bookRepository, 60000 ),
+                new IsbnBloomFilter( bookRepository, 1000, 0.01 ),
+                new OptimisticLockRetry( meterRegistry, 3, 0 ), Mockito.mock(EntityManager.class),
+                Mockito.mock(PlatformTransactionManager.class) );
     }
 
     @Test
@@ -77,6 +93,83 @@ public class BookServiceTest {
         Mockito.verify(bookRepository, Mockito.never()).save(book); // simula que o repository nunca vai chamar o método save()
     }
 
+    @Test
+    @DisplayName("Deve lançar erro de negócio quando o índice único rejeitar um ISBN que o filtro não conhecia.")
+    public void shouldReportDuplicatedIsbnMissedByFilter() {
+        //cenario: isbn saved by another instance, unknown to the filter of this one
+        IsbnBloomFilter isbnFilter = new IsbnBloomFilter( bookRepository, 1000, 0.01 );
+        Mockito.when(bookRepository.streamAllIsbns()).thenReturn(Stream.empty());
+        isbnFilter.rebuild();
+        bookService = new BookServiceImpl( bookRepository, new BookSearchIndex( bookRepository, 60000 ), isbnFilter,
+                new OptimisticLockRetry( meterRegistry, 3, 0 ), Mockito.mock(EntityManager.class),
+                Mockito.mock(PlatformTransactionManager.class) );
+        Books book = createNewBook();
+        Mockito.when(bookRepository.save(book)).thenThrow(new DataIntegrityViolationException("ux_books_isbn"));
+        Mockito.when(bookRepository.existsByIsbn(book.getIsbn())).thenReturn(true);
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> bookService.save(book));
+
+        //verificacao
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Isbn já cadastrado.");
+        assertThat(isbnFilter.mightContain(book.getIsbn())).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve salvar em lote apenas livros com isbn novo e não repetido.")
+    public void saveAllTest() {
+        //cenario
+        Books newBook = createNewBook();
+        Books registeredBook = Books.builder().title("Outro").author("Fulano").isbn("9781234567898").build();
+        Books repeatedBook = createNewBook();
+        Mockito.when(bookRepository.findExistingIsbns(Mockito.anyCollection()))
+                .thenReturn(Collections.singleton("9781234567898"));
+
+        //execucao
+        List<Books> savedBooks = bookService.saveAll(Arrays.asList(newBook, registeredBook, repeatedBook));
+
+        //verificacao
+        assertThat(savedBooks).containsExactly(newBook);
+        Mockito.verify(bookRepository, Mockito.times(1)).findExistingIsbns(Mockito.anyCollection());
+        Mockito.verify(bookRepository, Mockito.times(1)).saveAll(Collections.singletonList(newBook));
+        Mockito.verify(bookRepository, Mockito.never()).existsByIsbn(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Deve indexar os livros do lote somente após o commit da transação.")
+    public void saveAllIndexesAfterCommitTest() {
+        //cenario
+        BookSearchIndex searchIndex = new BookSearchIndex( bookRepository, 60000 );
+        Mockito.when(bookRepository.findAll()).thenReturn(Collections.emptyList());
+        searchIndex.find(Books.builder().build(), PageRequest.of(0, 10));
+        bookService = new BookServiceImpl( bookRepository, searchIndex, new IsbnBloomFilter( bookRepository, 1000, 0.01 ),
+                new OptimisticLockRetry( meterRegistry, 3, 0 ), Mockito.mock(EntityManager.class),
+                Mockito.mock(PlatformTransactionManager.class) );
+        Books book = createNewBook();
+        Mockito.when(bookRepository.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            book.setId(1L);
+            return invocation.getArgument(0);
+        });
+
+        //execucao
+        TransactionSynchronizationManager.initSynchronization();
+        List<Books> beforeCommit;
+        try {
+            bookService.saveAll(Collections.singletonList(book));
+            beforeCommit = searchIndex.find(Books.builder().build(), PageRequest.of(0, 10)).getContent();
+            TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        List<Books> afterCommit = searchIndex.find(Books.builder().build(), PageRequest.of(0, 10)).getContent();
+
+        //verificacao: a rolled back batch never gets to the after commit callback
+        assertThat(beforeCommit).isEmpty();
+        assertThat(afterCommit).extracting(Books::getId).containsExactly(1L);
+    }
+
     @Test
     @DisplayName("Deve obter um livro por id")
     public void getByIdTest() {
@@ -169,6 +262,69 @@ public class BookServiceTest {
         assertThat(book.getIsbn()).isEqualTo(updateBook.getIsbn());
     }
 
+    @Test
+    @DisplayName("Deve reaplicar a alteração sobre a versão atual quando houver conflito de atualização.")
+    public void updateBookConflictRetryTest() {
+        //cenario
+        Books staleBook = Books.builder().id(1L).title("Novo título").author("Novo autor").isbn("123").version(1L)
+                .storedTitle("Título").storedAuthor("Autor").build();
+        Books currentBook = Books.builder().id(1L).title("Título").author("Autor").isbn("123").version(2L).build();
+        Mockito.when(bookRepository.save(Mockito.any(Books.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Books.class, 1L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(bookRepository.findById(1L)).thenReturn(Optional.of(currentBook));
+
+        //execucao
+        Books book = bookService.update(staleBook);
+
+        //verificacao
+        assertThat(book).isSameAs(currentBook);
+        assertThat(book.getVersion()).isEqualTo(2L);
+        assertThat(book.getTitle()).isEqualTo("Novo título");
+        assertThat(book.getAuthor()).isEqualTo("Novo autor");
+        assertThat(meterRegistry.counter("biblioteca.optimistic.lock.conflicts", "entity", "book").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("biblioteca.optimistic.lock.retries", "entity", "book").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve sobrescrever o título alterado por uma atualização concorrente.")
+    public void updateBookOverlappingConflictTest() {
+        //cenario
+        Books staleBook = Books.builder().id(1L).title("Novo título").author("Autor").isbn("123").version(1L)
+                .storedTitle("Título").storedAuthor("Autor").build();
+        Books currentBook = Books.builder().id(1L).title("Outro título").author("Autor").isbn("123").version(2L).build();
+        Mockito.when(bookRepository.save(Mockito.any(Books.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Books.class, 1L));
+        Mockito.when(bookRepository.findById(1L)).thenReturn(Optional.of(currentBook));
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> bookService.update(staleBook));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(currentBook.getTitle()).isEqualTo("Outro título");
+        Mockito.verify(bookRepository, Mockito.times(1)).save(Mockito.any(Books.class));
+    }
+
+    @Test
+    @DisplayName("Deve desistir da atualização após o número máximo de conflitos.")
+    public void updateBookConflictExhaustedTest() {
+        //cenario
+        Books staleBook = Books.builder().id(1L).title("Novo título").isbn("123").version(1L).build();
+        Mockito.when(bookRepository.save(Mockito.any(Books.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Books.class, 1L));
+        Mockito.when(bookRepository.findById(1L))
+                .thenAnswer(invocation -> Optional.of(Books.builder().id(1L).isbn("123").build()));
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> bookService.update(staleBook));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        Mockito.verify(bookRepository, Mockito.times(3)).save(Mockito.any(Books.class));
+        assertThat(meterRegistry.counter("biblioteca.optimistic.lock.exhausted", "entity", "book").count()).isEqualTo(1);
+    }
+
     @Test
     @DisplayName("Deve ocorrer erro ao tentar atualizar um livro inexistente.")
     public void updateInvalidBookTest() {
@@ -189,12 +345,12 @@ public class BookServiceTest {
         //cenario
         Long id = 1L;
         Books book = createNewBook();
+        book.setId(id);
 
         PageRequest pageRequest = PageRequest.of(0, 10);
 
         List<Books> booksList = Arrays.asList(book);
-        Page<Books> booksPage = new PageImpl<Books>(booksList, pageRequest, 1);
-        Mockito.when(bookRepository.findAll(Mockito.any(Example.class), Mockito.any(PageRequest.class))).thenReturn(booksPage);
+        Mockito.when(bookRepository.findAll()).thenReturn(booksList);
 
         //execucao
         Page<Books> result = bookService.find(book, pageRequest);
@@ -207,23 +363,20 @@ public class BookServiceTest {
     }
 
     @Test
-    @DisplayName("Deve obter um livro pelo isbn.")
-    public void getBookByIsbnTest() {
+    @DisplayName("Deve obter o id de um livro pelo isbn.")
+    public void getBookIdByIsbnTest() {
         //cenario
         String isbn = "9781234567897";
-        Books book = Books.builder().id(1L).isbn(isbn).build();
 
-        Mockito.when(bookRepository.findByIsbn(isbn)).thenReturn(Optional.of(book));
+        Mockito.when(bookRepository.findIdByIsbn(isbn)).thenReturn(Optional.of(1L));
 
         //execucao
-        Optional<Books> bookFound = bookService.getBookByIsbn(isbn);
+        Optional<Long> idFound = bookService.getBookIdByIsbn(isbn);
 
         //verificacao
-        assertThat(bookFound.isPresent()).isTrue();
-        assertThat(bookFound.get().getId()).isEqualTo(1L);
-        assertThat(bookFound.get().getIsbn()).isEqualTo(isbn);
+        assertThat(idFound).contains(1L);
 
-        Mockito.verify(bookRepository, Mockito.times(1)).findByIsbn(isbn);
+        Mockito.verify(bookRepository, Mockito.times(1)).findIdByIsbn(isbn);
 
     }
 
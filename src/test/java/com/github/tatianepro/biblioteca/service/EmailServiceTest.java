@@ -0,0 +1,75 @@
+package com.github.tatianepro.biblioteca.service;
+
+import com.github.tatianepro.biblioteca.service.impl.EmailServiceImpl;
+import com.github.tatianepro.biblioteca.service.mail.MailDispatcher;
+import com.github.tatianepro.biblioteca.service.mail.MailDispatcherProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class EmailServiceTest {
+
+    EmailService emailService;
+
+    @MockBean
+    MailDispatcher mailDispatcher;
+
+    @BeforeEach
+    public void setUp() {
+        MailDispatcherProperties properties = new MailDispatcherProperties();
+        properties.setRecipientsPerMessage(2);
+        emailService = new EmailServiceImpl(mailDispatcher, properties);
+        ReflectionTestUtils.setField(emailService, "sender", "administration@library-api.com");
+    }
+
+    @Test
+    @DisplayName("Deve agrupar os destinatários em mensagens de tamanho configurável.")
+    public void sendMailsInBatchesTest() {
+        //cenario
+        ArgumentCaptor<SimpleMailMessage> messages = ArgumentCaptor.forClass(SimpleMailMessage.class);
+        Mockito.when(mailDispatcher.dispatch(Mockito.any(SimpleMailMessage.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        //execucao
+        CompletableFuture<Void> result = emailService.sendMails("Atrasado", Arrays.asList("a@email.com", "b@email.com", "c@email.com"));
+
+        //verificacao
+        assertThat(result).isCompleted();
+        Mockito.verify(mailDispatcher, Mockito.times(2)).dispatch(messages.capture());
+        assertThat(messages.getAllValues().get(0).getTo()).containsExactly("a@email.com", "b@email.com");
+        assertThat(messages.getAllValues().get(1).getTo()).containsExactly("c@email.com");
+        assertThat(messages.getAllValues().get(1).getFrom()).isEqualTo("administration@library-api.com");
+        assertThat(messages.getAllValues().get(1).getText()).isEqualTo("Atrasado");
+    }
+
+    @Test
+    @DisplayName("Deve sinalizar falha quando alguma das mensagens for descartada.")
+    public void sendMailsFailureTest() {
+        //cenario
+        CompletableFuture<Void> dropped = new CompletableFuture<>();
+        dropped.completeExceptionally(new IllegalStateException("smtp fora do ar"));
+        Mockito.when(mailDispatcher.dispatch(Mockito.any(SimpleMailMessage.class)))
+                .thenReturn(CompletableFuture.completedFuture(null), dropped);
+
+        //execucao
+        CompletableFuture<Void> result = emailService.sendMails("Atrasado", Arrays.asList("a@email.com", "b@email.com", "c@email.com"));
+
+        //verificacao
+        assertThat(result).isCompletedExceptionally();
+    }
+}
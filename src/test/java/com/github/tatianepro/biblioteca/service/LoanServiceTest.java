@@ -5,6 +5,9 @@ import com.github.tatianepro.biblioteca.model.entity.Books;
 import com.github.tatianepro.biblioteca.model.entity.Loan;
 import com.github.tatianepro.biblioteca.model.repository.LoanRepository;
 import com.github.tatianepro.biblioteca.service.impl.LoanServiceImpl;
+import com.github.tatianepro.biblioteca.service.loan.ActiveLoanRegistry;
+import com.github.tatianepro.biblioteca.service.retry.OptimisticLockRetry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -12,9 +15,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -22,6 +27,7 @@ import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.ThrowableAssert.catchThrowable;
 
@@ -31,12 +37,16 @@ public class LoanServiceTest {
 
     LoanService loanService;
 
+    ActiveLoanRegistry activeLoans;
+
     @MockBean
     LoanRepository loanRepository;
 
     @BeforeEach
     public void setUp() {
-        this.loanService = new LoanServiceImpl(loanRepository);
+        this.activeLoans = new ActiveLoanRegistry(loanRepository, 64);
+        this.loanService = new LoanServiceImpl(loanRepository, activeLoans,
+                new OptimisticLockRetry(new SimpleMeterRegistry(), 3, 0), 4);
     }
 
     @Test
@@ -61,6 +71,7 @@ public class LoanServiceTest {
         Assertions.assertThat(loan.getCustomer()).isEqualTo(savedLoan.getCustomer());
         Assertions.assertThat(loan.getBook()).isEqualTo(savedLoan.getBook());
         Assertions.assertThat(loan.getLoanDate()).isEqualTo(savedLoan.getLoanDate());
+        Assertions.assertThat(savingLoan.getDueDate()).isEqualTo(savingLoan.getLoanDate().plusDays(4));
 
     }
 
@@ -84,6 +95,24 @@ public class LoanServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve lançar um erro de negócio quando o banco recusar um segundo empréstimo aberto do livro.")
+    public void uniqueOpenLoanViolationOnSaveLoanTest() {
+        //cenario
+        Loan savingLoan = createLoan();
+        Mockito.when(loanRepository.existsByBookAndNotReturned(savingLoan.getBook())).thenReturn(false, true);
+        Mockito.when(loanRepository.save(savingLoan)).thenThrow(new DataIntegrityViolationException("ux_loan_open_book"));
+
+        //execucao
+        Throwable exception = catchThrowable(() -> loanService.save(savingLoan));
+
+        //verificacao
+        Assertions.assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already borrowed.");
+        Assertions.assertThat(activeLoans.isBorrowed(savingLoan.getBook().getId())).isTrue();
+    }
+
     @Test
     @DisplayName("Deve obter as informações de um empréstimo pelo ID")
     public void getLoanDetailsTest() {
@@ -126,6 +155,93 @@ public class LoanServiceTest {
         Mockito.verify(loanRepository).save(loan);
     }
 
+    @Test
+    @DisplayName("Não deve liberar o livro ao atualizar um empréstimo que já estava devolvido.")
+    public void updateReturnedLoanKeepsBookBorrowedTest() {
+        //cenario
+        Mockito.when(loanRepository.streamBorrowedBookIds()).thenReturn(Stream.of(1L));
+        activeLoans.rebuild();
+        Loan oldLoan = createLoan();
+        oldLoan.setId(1L);
+        oldLoan.setStoredReturned(true);
+        oldLoan.setReturned(true);
+        Mockito.when(loanRepository.save(oldLoan)).thenReturn(oldLoan);
+
+        //execucao
+        loanService.update(oldLoan);
+
+        //verificacao
+        Assertions.assertThat(activeLoans.isBorrowed(1L)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve lançar um erro de negócio ao reabrir um empréstimo de um livro emprestado a outro cliente.")
+    public void reopenLoanOfBorrowedBookTest() {
+        //cenario
+        Loan loan = createLoan();
+        loan.setId(1L);
+        loan.setStoredReturned(true);
+        loan.setReturned(false);
+        Mockito.when(loanRepository.existsOtherOpenLoan(loan.getBook(), 1L)).thenReturn(true);
+
+        //execucao
+        Throwable exception = catchThrowable(() -> loanService.update(loan));
+
+        //verificacao
+        Assertions.assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already borrowed.");
+        Mockito.verify(loanRepository, Mockito.never()).save(loan);
+    }
+
+    @Test
+    @DisplayName("Deve reaplicar a devolução sobre a versão atual quando houver conflito de atualização.")
+    public void updateLoanConflictRetryTest() {
+        //cenario
+        Loan staleLoan = createLoan();
+        staleLoan.setId(1L);
+        staleLoan.setReturned(true);
+        Loan currentLoan = createLoan();
+        currentLoan.setId(1L);
+        currentLoan.setVersion(2L);
+        Mockito.when(loanRepository.save(Mockito.any(Loan.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Loan.class, 1L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(loanRepository.findById(1L)).thenReturn(Optional.of(currentLoan));
+
+        //execucao
+        Loan updatedLoan = loanService.update(staleLoan);
+
+        //verificacao
+        Assertions.assertThat(updatedLoan).isSameAs(currentLoan);
+        Assertions.assertThat(updatedLoan.getReturned()).isTrue();
+        Mockito.verify(loanRepository, Mockito.times(2)).save(Mockito.any(Loan.class));
+    }
+
+    @Test
+    @DisplayName("Não deve reaplicar a devolução quando a atualização concorrente já mudou o status.")
+    public void updateLoanOverlappingConflictTest() {
+        //cenario: read open and returned here, already returned meanwhile by another request
+        Loan staleLoan = createLoan();
+        staleLoan.setId(1L);
+        staleLoan.setReturned(true);
+        Loan currentLoan = createLoan();
+        currentLoan.setId(1L);
+        currentLoan.setVersion(2L);
+        currentLoan.setReturned(true);
+        currentLoan.setStoredReturned(true);
+        Mockito.when(loanRepository.save(Mockito.any(Loan.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Loan.class, 1L));
+        Mockito.when(loanRepository.findById(1L)).thenReturn(Optional.of(currentLoan));
+
+        //execucao
+        Throwable exception = catchThrowable(() -> loanService.update(staleLoan));
+
+        //verificacao
+        Assertions.assertThat(exception).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        Mockito.verify(loanRepository, Mockito.times(1)).save(Mockito.any(Loan.class));
+    }
+
     @Test
     @DisplayName("Deve filtrar empréstimos pelas propriedades.")
     public void findBookLoanTest() {
@@ -160,5 +276,4 @@ public class LoanServiceTest {
         Loan savingLoan = Loan.builder().customer("Fulano").book(book).loanDate(LocalDate.now()).build();
         return savingLoan;
     }
-
 }
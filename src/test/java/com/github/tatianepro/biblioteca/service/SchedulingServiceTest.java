@@ -0,0 +1,175 @@
+package com.github.tatianepro.biblioteca.service;
+
+import com.github.tatianepro.biblioteca.api.dto.LateLoanDto;
+import com.github.tatianepro.biblioteca.model.entity.LateLoanShard;
+import com.github.tatianepro.biblioteca.service.cluster.ClusterLease;
+import com.github.tatianepro.biblioteca.service.cluster.LateLoanShards;
+import com.github.tatianepro.biblioteca.service.notice.LateLoanNotice;
+import com.github.tatianepro.biblioteca.service.notice.LateLoanNoticeTemplate;
+import com.github.tatianepro.biblioteca.service.outbox.EmailOutboxWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class SchedulingServiceTest {
+
+    SchedulingService schedulingService;
+
+    @MockBean
+    LoanService loanService;
+
+    @MockBean
+    EmailOutboxWriter emailOutbox;
+
+    @MockBean
+    ClusterLease clusterLease;
+
+    @MockBean
+    LateLoanShards shards;
+
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        LateLoanNoticeTemplate template = new LateLoanNoticeTemplate("{customer}:{count}|{loans}", "{title};", 20);
+        schedulingService = new SchedulingService(loanService, emailOutbox, template, clusterLease, shards, meterRegistry);
+        ReflectionTestUtils.setField(schedulingService, "chunkSize", 2);
+    }
+
+    @Test
+    @DisplayName("O nó que obtiver o lease deve dividir a execução do dia em shards e processá-los.")
+    public void sendEmailToLateLoansAsLeaderTest() {
+        //cenario
+        LocalDate today = LocalDate.now();
+        LateLoanShard shard = createShard("", null);
+        Mockito.when(clusterLease.tryAcquire(SchedulingService.LATE_LOANS_JOB, today)).thenReturn(true);
+        Mockito.when(shards.claim()).thenReturn(Optional.of(shard), Optional.empty());
+        Mockito.when(loanService.getLateLoansAfter(today, "", 0L, null, 2))
+                .thenReturn(new SliceImpl<>(Collections.emptyList(), PageRequest.of(0, 2), false));
+
+        //execucao
+        schedulingService.sendEmailToLateLoans();
+
+        //verificacao
+        Mockito.verify(shards).plan(today);
+        Mockito.verify(clusterLease).complete(SchedulingService.LATE_LOANS_JOB, today);
+        Mockito.verify(shards).complete(shard, 0);
+    }
+
+    @Test
+    @DisplayName("Os demais nós não devem planejar a execução, somente processar os shards pendentes.")
+    public void sendEmailToLateLoansAsFollowerTest() {
+        //cenario
+        Mockito.when(clusterLease.tryAcquire(ArgumentMatchers.anyString(), ArgumentMatchers.any(LocalDate.class))).thenReturn(false);
+        Mockito.when(shards.claim()).thenReturn(Optional.empty());
+
+        //execucao
+        schedulingService.sendEmailToLateLoans();
+
+        //verificacao
+        Mockito.verify(shards, Mockito.never()).plan(ArgumentMatchers.any());
+        Mockito.verify(clusterLease, Mockito.never()).complete(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Mockito.verify(shards).claim();
+        Mockito.verifyNoInteractions(emailOutbox);
+    }
+
+    @Test
+    @DisplayName("Deve gravar na outbox um aviso por cliente do shard, mesmo quando os empréstimos do cliente caem em lotes diferentes.")
+    @SuppressWarnings("unchecked")
+    public void processShardPerCustomerTest() {
+        //cenario
+        LocalDate lateDate = LocalDate.now();
+        LateLoanShard shard = createShard("a@email.com", "d@email.com");
+        Mockito.when(shards.extend(shard)).thenReturn(true);
+        Mockito.when(loanService.getLateLoansAfter(lateDate, "a@email.com", 0L, "d@email.com", 2)).thenReturn(new SliceImpl<>(
+                Arrays.asList(createLateLoan(7L, "Ana", "a@email.com", "Livro A"), createLateLoan(2L, "Bia", "b@email.com", "Livro B")),
+                PageRequest.of(0, 2), true));
+        Mockito.when(loanService.getLateLoansAfter(lateDate, "b@email.com", 2L, "d@email.com", 2)).thenReturn(new SliceImpl<>(
+                Arrays.asList(createLateLoan(5L, "Bia", "b@email.com", "Livro C"), createLateLoan(1L, "Caio", "c@email.com", "Livro D")),
+                PageRequest.of(0, 2), false));
+        Mockito.when(emailOutbox.enqueue(ArgumentMatchers.anyList(), ArgumentMatchers.any(LocalDate.class)))
+                .thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        ArgumentCaptor<List<LateLoanNotice>> notices = ArgumentCaptor.forClass(List.class);
+
+        //execucao
+        schedulingService.processShard(shard);
+
+        //verificacao
+        Mockito.verify(emailOutbox, Mockito.times(2)).enqueue(notices.capture(), ArgumentMatchers.eq(LocalDate.now()));
+        assertThat(notices.getAllValues().get(0)).containsExactly(new LateLoanNotice("a@email.com", "Ana:1|Livro A;"));
+        assertThat(notices.getAllValues().get(1)).containsExactly(
+                new LateLoanNotice("b@email.com", "Bia:2|Livro B;Livro C;"),
+                new LateLoanNotice("c@email.com", "Caio:1|Livro D;"));
+        assertThat(meterRegistry.timer("biblioteca.late.loans.chunk").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("biblioteca.late.loans.enqueued").count()).isEqualTo(3);
+        Mockito.verify(shards).complete(shard, 3);
+    }
+
+    @Test
+    @DisplayName("Deve parar o shard quando outro nó tiver assumido o shard.")
+    public void processShardTakenOverTest() {
+        //cenario
+        LocalDate lateDate = LocalDate.now();
+        LateLoanShard shard = createShard("", null);
+        Mockito.when(shards.extend(shard)).thenReturn(false);
+        Mockito.when(loanService.getLateLoansAfter(lateDate, "", 0L, null, 2)).thenReturn(new SliceImpl<>(
+                Arrays.asList(createLateLoan(7L, "Ana", "a@email.com", "Livro A"), createLateLoan(2L, "Bia", "b@email.com", "Livro B")),
+                PageRequest.of(0, 2), true));
+
+        //execucao
+        schedulingService.processShard(shard);
+
+        //verificacao
+        Mockito.verify(loanService, Mockito.times(1)).getLateLoansAfter(ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt());
+        Mockito.verify(shards, Mockito.never()).complete(ArgumentMatchers.any(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("Não deve gravar avisos quando não houver empréstimos atrasados no shard.")
+    public void noLateLoansTest() {
+        //cenario
+        LocalDate lateDate = LocalDate.now();
+        Mockito.when(loanService.getLateLoansAfter(lateDate, "", 0L, null, 2))
+                .thenReturn(new SliceImpl<>(Collections.emptyList(), PageRequest.of(0, 2), false));
+
+        //execucao
+        schedulingService.processShard(createShard("", null));
+
+        //verificacao
+        Mockito.verifyNoInteractions(emailOutbox);
+    }
+
+    private LateLoanShard createShard(String fromEmail, String toEmail) {
+        return LateLoanShard.builder().id(1L).runDate(LocalDate.now()).lateDate(LocalDate.now())
+                .fromEmail(fromEmail).toEmail(toEmail).status(LateLoanShard.Status.PROCESSING).build();
+    }
+
+    private LateLoanDto createLateLoan(Long id, String customer, String email, String title) {
+        return LateLoanDto.builder().id(id).customer(customer).customerEmail(email).bookTitle(title)
+                .loanDate(LocalDate.now().minusDays(10)).build();
+    }
+}
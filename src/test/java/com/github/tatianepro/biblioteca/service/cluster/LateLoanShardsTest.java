@@ -0,0 +1,107 @@
+package com.github.tatianepro.biblioteca.service.cluster;
+
+import com.github.tatianepro.biblioteca.model.entity.LateLoanShard;
+import com.github.tatianepro.biblioteca.model.repository.LateLoanShardRepository;
+import com.github.tatianepro.biblioteca.service.LoanService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LateLoanShardsTest {
+
+    LateLoanShards shards;
+
+    @MockBean
+    LateLoanShardRepository repository;
+
+    @MockBean
+    LoanService loanService;
+
+    @BeforeEach
+    public void setUp() {
+        ClusterProperties properties = new ClusterProperties();
+        properties.setNodeId("node-a");
+        properties.setLateLoanShards(4);
+        shards = new LateLoanShards(repository, loanService, properties);
+    }
+
+    @Test
+    @DisplayName("Deve dividir a execução em faixas de email com quantidades parecidas de empréstimos.")
+    @SuppressWarnings("unchecked")
+    public void planTest() {
+        //cenario
+        LocalDate today = LocalDate.now();
+        Mockito.when(loanService.countLateLoans(today)).thenReturn(8L);
+        Mockito.when(loanService.getLateLoanEmailAt(today, 2)).thenReturn(Optional.of("c@email.com"));
+        // o mesmo cliente na fronteira de dois shards: as faixas são unidas
+        Mockito.when(loanService.getLateLoanEmailAt(today, 4)).thenReturn(Optional.of("c@email.com"));
+        Mockito.when(loanService.getLateLoanEmailAt(today, 6)).thenReturn(Optional.of("f@email.com"));
+        ArgumentCaptor<List<LateLoanShard>> saved = ArgumentCaptor.forClass(List.class);
+
+        //execucao
+        int planned = shards.plan(today);
+
+        //verificacao
+        assertThat(planned).isEqualTo(3);
+        Mockito.verify(repository).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting(LateLoanShard::getFromEmail).containsExactly("", "c@email.com", "f@email.com");
+        assertThat(saved.getValue()).extracting(LateLoanShard::getToEmail).containsExactly("c@email.com", "f@email.com", null);
+        assertThat(saved.getValue()).allMatch(shard -> shard.getStatus() == LateLoanShard.Status.PENDING
+                && shard.getRunDate().equals(today) && shard.getLateDate().equals(today));
+    }
+
+    @Test
+    @DisplayName("Não deve planejar de novo uma execução já planejada.")
+    public void planAlreadyPlannedTest() {
+        //cenario
+        LocalDate today = LocalDate.now();
+        Mockito.when(repository.existsByRunDate(today)).thenReturn(true);
+
+        //execucao
+        int planned = shards.plan(today);
+
+        //verificacao
+        assertThat(planned).isZero();
+        Mockito.verifyNoInteractions(loanService);
+        Mockito.verify(repository, Mockito.never()).saveAll(ArgumentMatchers.any());
+    }
+
+    @Test
+    @DisplayName("Deve reservar o primeiro shard que nenhum outro nó reservou antes.")
+    public void claimTest() {
+        //cenario
+        LateLoanShard free = LateLoanShard.builder().id(2L).build();
+        Mockito.when(repository.findClaimableIds(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(Arrays.asList(1L, 2L));
+        Mockito.when(repository.claim(ArgumentMatchers.eq(1L), ArgumentMatchers.eq("node-a"), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any(LocalDateTime.class), ArgumentMatchers.any(LocalDateTime.class)))
+                .thenReturn(0);
+        Mockito.when(repository.claim(ArgumentMatchers.eq(2L), ArgumentMatchers.eq("node-a"), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any(LocalDateTime.class), ArgumentMatchers.any(LocalDateTime.class)))
+                .thenReturn(1);
+        Mockito.when(repository.findById(2L)).thenReturn(Optional.of(free));
+
+        //execucao
+        Optional<LateLoanShard> claimed = shards.claim();
+
+        //verificacao
+        assertThat(claimed).contains(free);
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.tatianepro.biblioteca.service.loan;
+
+import com.github.tatianepro.biblioteca.api.exception.BusinessException;
+import com.github.tatianepro.biblioteca.model.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ActiveLoanRegistryTest {
+
+    LoanRepository loanRepository;
+    ActiveLoanRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        loanRepository = Mockito.mock(LoanRepository.class);
+        registry = new ActiveLoanRegistry(loanRepository, 8);
+    }
+
+    @Test
+    @DisplayName("Deve carregar os livros emprestados e consultar o banco apenas para confirmá-los.")
+    public void rebuildTest() {
+        //cenario
+        Mockito.when(loanRepository.streamBorrowedBookIds()).thenReturn(Stream.of(3L, 11L));
+        registry.rebuild();
+        BooleanSupplier database = Mockito.mock(BooleanSupplier.class);
+        Mockito.when(database.getAsBoolean()).thenReturn(true);
+
+        //execucao
+        Throwable exception = catchThrowable(() -> registry.borrow(11L, database, () -> 1L));
+        Long loanId = registry.borrow(19L, database, () -> 2L);
+
+        //verificacao
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book already borrowed.");
+        assertThat(loanId).isEqualTo(2L);
+        assertThat(registry.isBorrowed(3L)).isTrue();
+        assertThat(registry.isBorrowed(19L)).isTrue();
+        assertThat(registry.isBorrowed(27L)).isFalse();
+        Mockito.verify(database, Mockito.times(1)).getAsBoolean();
+    }
+
+    @Test
+    @DisplayName("Deve emprestar o livro devolvido por outra instância quando o banco o confirmar disponível.")
+    public void staleBorrowedBookTest() {
+        //cenario
+        Mockito.when(loanRepository.streamBorrowedBookIds()).thenReturn(Stream.of(5L));
+        registry.rebuild();
+
+        //execucao
+        Long loanId = registry.borrow(5L, () -> false, () -> 1L);
+
+        //verificacao
+        assertThat(loanId).isEqualTo(1L);
+        assertThat(registry.isBorrowed(5L)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Não deve liberar o livro ao atualizar um empréstimo que já estava devolvido.")
+    public void updateReturnedLoanKeepsBookTest() {
+        //cenario
+        Mockito.when(loanRepository.streamBorrowedBookIds()).thenReturn(Stream.empty());
+        registry.rebuild();
+        registry.borrow(5L, () -> false, () -> 2L);
+
+        //execucao: an old loan of the same book, already returned, patched again
+        registry.update(5L, false, () -> 1L);
+
+        //verificacao
+        assertThat(registry.isBorrowed(5L)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve liberar o livro quando o empréstimo for devolvido.")
+    public void returnReleasesBookTest() {
+        //cenario
+        Mockito.when(loanRepository.streamBorrowedBookIds()).thenReturn(Stream.empty());
+        registry.rebuild();
+        registry.borrow(5L, () -> false, () -> 1L);
+
+        //execucao
+        registry.update(5L, true, () -> 1L);
+
+        //verificacao
+        assertThat(registry.isBorrowed(5L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Não deve marcar o livro quando a gravação do empréstimo falhar.")
+    public void failedInsertTest() {
+        //cenario
+        Mockito.when(loanRepository.streamBorrowedBookIds()).thenReturn(Stream.empty());
+        registry.rebuild();
+
+        //execucao
+        Throwable exception = catchThrowable(() -> registry.borrow(5L, () -> false, () -> {
+            throw new IllegalStateException("banco fora do ar");
+        }));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(IllegalStateException.class);
+        assertThat(registry.isBorrowed(5L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve permitir um único empréstimo para pedidos simultâneos do mesmo livro.")
+    public void concurrentBorrowTest() throws Exception {
+        //cenario
+        Mockito.when(loanRepository.streamBorrowedBookIds()).thenReturn(Stream.empty());
+        registry.rebuild();
+        int requests = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger inserts = new AtomicInteger();
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        //execucao
+        for (int i = 0; i < requests; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    registry.borrow(7L, () -> inserts.get() > 0, inserts::incrementAndGet);
+                    return true;
+                } catch (BusinessException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        int borrowed = 0;
+        for (Future<Boolean> result : results) {
+            borrowed += result.get(10, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        executor.shutdown();
+
+        //verificacao
+        assertThat(borrowed).isEqualTo(1);
+        assertThat(inserts.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.tatianepro.biblioteca.service.loan;
+
+import com.github.tatianepro.biblioteca.model.repository.LoanRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoanGaugesTest {
+
+    @Test
+    @DisplayName("Deve publicar os empréstimos em aberto e atrasados contados no banco a cada atualização.")
+    public void refreshTest() {
+        //cenario
+        LoanRepository loanRepository = Mockito.mock(LoanRepository.class);
+        LoanGauges gauges = new LoanGauges(loanRepository);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        gauges.bindTo(meterRegistry);
+        Mockito.when(loanRepository.countOpenLoans()).thenReturn(5L, 4L);
+        Mockito.when(loanRepository.countLateLoans(LocalDate.now())).thenReturn(2L, 1L);
+
+        //execucao
+        gauges.refresh();
+        double openBefore = meterRegistry.get("biblioteca.loans.open").gauge().value();
+        double overdueBefore = meterRegistry.get("biblioteca.loans.overdue").gauge().value();
+        gauges.refresh();   // a loan returned through another instance
+
+        //verificacao
+        assertThat(openBefore).isEqualTo(5);
+        assertThat(overdueBefore).isEqualTo(2);
+        assertThat(meterRegistry.get("biblioteca.loans.open").gauge().value()).isEqualTo(4);
+        assertThat(meterRegistry.get("biblioteca.loans.overdue").gauge().value()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.tatianepro.biblioteca.service.mail;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CircuitBreakerTest {
+
+    AtomicLong clock = new AtomicLong();
+    CircuitBreaker breaker = new CircuitBreaker(3, 1000, clock::get);
+
+    @Test
+    @DisplayName("Deve abrir após as falhas consecutivas e liberar uma única tentativa depois do intervalo.")
+    public void openAndHalfOpenTest() {
+        //cenario
+        breaker.recordFailure();
+        breaker.recordFailure();
+        boolean allowedBeforeThreshold = breaker.allowRequest();
+        breaker.recordFailure();
+
+        //execucao
+        boolean allowedWhileOpen = breaker.allowRequest();
+        clock.addAndGet(1000);
+        boolean trial = breaker.allowRequest();
+        boolean secondTrial = breaker.allowRequest();
+
+        //verificacao
+        assertThat(allowedBeforeThreshold).isTrue();
+        assertThat(allowedWhileOpen).isFalse();
+        assertThat(trial).isTrue();
+        assertThat(secondTrial).isFalse();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    @DisplayName("Deve fechar quando a tentativa passar e reabrir quando falhar.")
+    public void trialResultTest() {
+        //cenario
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        clock.addAndGet(1000);
+        breaker.allowRequest();
+
+        //execucao
+        breaker.recordFailure();
+        CircuitBreaker.State afterFailedTrial = breaker.getState();
+        clock.addAndGet(1000);
+        breaker.allowRequest();
+        breaker.recordSuccess();
+
+        //verificacao
+        assertThat(afterFailedTrial).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve liberar a tentativa sem mudar de estado quando a falha não for do servidor.")
+    public void ignoredTrialTest() {
+        //cenario
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        clock.addAndGet(1000);
+        breaker.allowRequest();
+
+        //execucao
+        boolean whileTrialInFlight = breaker.allowRequest();
+        breaker.recordIgnored();
+
+        //verificacao
+        assertThat(whileTrialInFlight).isFalse();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+}
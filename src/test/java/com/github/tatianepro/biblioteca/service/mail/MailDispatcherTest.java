@@ -0,0 +1,232 @@
+package com.github.tatianepro.biblioteca.service.mail;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import com.sun.mail.util.MailConnectException;
+import com.sun.mail.util.SocketConnectException;
+import com.icegreen.greenmail.util.ServerSetup;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.SendFailedException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// envio contra um servidor smtp em memória (GreenMail)
+public class MailDispatcherTest {
+
+    private static final ServerSetup SMTP = ServerSetupTest.SMTP;
+
+    GreenMail greenMail;
+    MailDispatcher mailDispatcher;
+    MailDispatcherProperties properties;
+    MeterRegistry meterRegistry;
+    AtomicInteger invalidMessages = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        greenMail = new GreenMail(SMTP);
+        properties = new MailDispatcherProperties();
+        properties.setWorkers(2);
+        properties.setInitialBackoffMillis(50);
+        properties.setMaxBackoffMillis(200);
+        properties.setBreakerOpenMillis(100);
+        properties.setShutdownTimeoutMillis(1000);
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost(SMTP.getBindAddress());
+        mailSender.setPort(SMTP.getPort());
+        mailDispatcher = new MailDispatcher(mailSender, properties);
+        meterRegistry = new SimpleMeterRegistry();
+        mailDispatcher.bindTo(meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        mailDispatcher.stop();
+        greenMail.stop();
+    }
+
+    @Test
+    @DisplayName("Deve enviar as mensagens em segundo plano reaproveitando a conexão smtp.")
+    public void dispatchTest() throws Exception {
+        //cenario
+        greenMail.start();
+        mailDispatcher.start();
+
+        //execucao
+        for (int i = 0; i < 10; i++) {
+            mailDispatcher.dispatch(createMessage("fulano" + i + "@email.com"));
+        }
+
+        //verificacao
+        assertThat(greenMail.waitForIncomingEmail(5000, 10)).isTrue();
+        assertThat(Arrays.stream(greenMail.getReceivedMessages())
+                .map(this::recipient)
+                .collect(Collectors.toSet()))
+                .hasSize(10);
+        awaitCounter("sent", 10);
+    }
+
+    @Test
+    @DisplayName("Deve reenviar com backoff quando o servidor smtp voltar.")
+    public void retryUntilServerIsBackTest() throws Exception {
+        //cenario
+        properties.setMaxAttempts(20);
+        properties.setBreakerFailureThreshold(2);
+        mailDispatcher.start();
+
+        //execucao
+        mailDispatcher.dispatch(createMessage("fulano@email.com"));
+        awaitCounter("retried", 2);
+        greenMail.start();
+
+        //verificacao
+        assertThat(greenMail.waitForIncomingEmail(5000, 1)).isTrue();
+        assertThat(recipient(greenMail.getReceivedMessages()[0])).isEqualTo("fulano@email.com");
+        awaitCounter("sent", 1);
+    }
+
+    @Test
+    @DisplayName("Deve desistir da mensagem após o número máximo de tentativas.")
+    public void giveUpAfterMaxAttemptsTest() throws Exception {
+        //cenario
+        properties.setMaxAttempts(2);
+        mailDispatcher.start();
+
+        //execucao
+        mailDispatcher.dispatch(createMessage("fulano@email.com"));
+
+        //verificacao
+        awaitCounter("failed", 1);
+        assertThat(meterRegistry.get("biblioteca.mail.messages").tag("result", "sent").functionCounter().count())
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Deve concluir com erro, sem nova tentativa, a mensagem que falha inesperadamente e continuar enviando as demais.")
+    public void invalidMessageDoesNotStopWorkerTest() throws Exception {
+        //cenario
+        properties.setWorkers(1);
+        properties.setMaxAttempts(3);
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl() {
+            @Override
+            public MimeMessage createMimeMessage() {
+                if (invalidMessages.get() > 0) {
+                    invalidMessages.decrementAndGet();
+                    throw new IllegalStateException("unexpected failure");
+                }
+                return super.createMimeMessage();
+            }
+        };
+        mailSender.setHost(SMTP.getBindAddress());
+        mailSender.setPort(SMTP.getPort());
+        mailDispatcher = new MailDispatcher(mailSender, properties);
+        mailDispatcher.bindTo(meterRegistry = new SimpleMeterRegistry());
+        greenMail.start();
+        mailDispatcher.start();
+
+        //execucao: the first message cannot be built
+        invalidMessages.set(1);
+        CompletableFuture<Void> invalid = mailDispatcher.dispatch(createMessage("fulano@email.com"));
+        CompletableFuture<Void> valid = mailDispatcher.dispatch(createMessage("beltrano@email.com"));
+
+        //verificacao
+        assertThatThrownBy(() -> invalid.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        valid.get(5, TimeUnit.SECONDS);
+        assertThat(recipient(greenMail.getReceivedMessages()[0])).isEqualTo("beltrano@email.com");
+        awaitCounter("failed", 1);
+        assertThat(meterRegistry.get("biblioteca.mail.messages").tag("result", "retried").functionCounter().count())
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Deve falhar sem nova tentativa e sem abrir o circuito a mensagem recusada.")
+    public void rejectedMessageDoesNotOpenBreakerTest() throws Exception {
+        //cenario
+        properties.setWorkers(1);
+        properties.setMaxAttempts(5);
+        properties.setBreakerFailureThreshold(1);
+        greenMail.start();
+        mailDispatcher.start();
+        SimpleMailMessage withoutRecipient = createMessage("fulano@email.com");
+        withoutRecipient.setTo(new String[0]);
+
+        //execucao
+        CompletableFuture<Void> rejected = mailDispatcher.dispatch(withoutRecipient);
+        CompletableFuture<Void> valid = mailDispatcher.dispatch(createMessage("beltrano@email.com"));
+
+        //verificacao
+        assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(SendFailedException.class);
+        valid.get(5, TimeUnit.SECONDS);
+        assertThat(meterRegistry.get("biblioteca.mail.messages").tag("result", "retried").functionCounter().count())
+                .isZero();
+        assertThat(meterRegistry.get("biblioteca.mail.breaker.open").gauge().value()).isZero();
+        awaitCounter("failed", 1);
+    }
+
+    @Test
+    @DisplayName("Deve separar as recusas permanentes, as temporárias e as falhas de conexão.")
+    public void classifyTest() throws Exception {
+        //cenario
+        InternetAddress address = new InternetAddress("fulano@email.com");
+        SendFailedException unknownUser = new SendFailedException("Invalid Addresses",
+                new SMTPAddressFailedException(address, "RCPT TO", 550, "550 user unknown"));
+        SendFailedException mailboxFull = new SendFailedException("Invalid Addresses",
+                new SMTPAddressFailedException(address, "RCPT TO", 452, "452 mailbox full"));
+
+        //execucao e verificacao
+        assertThat(MailDispatcher.classify(unknownUser)).isEqualTo(MailDispatcher.Failure.PERMANENT);
+        assertThat(MailDispatcher.classify(new SMTPSendFailedException("DATA", 554, "554 rejected", null, null, null, null)))
+                .isEqualTo(MailDispatcher.Failure.PERMANENT);
+        assertThat(MailDispatcher.classify(mailboxFull)).isEqualTo(MailDispatcher.Failure.TRANSIENT);
+        assertThat(MailDispatcher.classify(new MailConnectException(new SocketConnectException("refused", new IOException(), "localhost", 25, 1000))))
+                .isEqualTo(MailDispatcher.Failure.TRANSPORT);
+        assertThat(MailDispatcher.classify(new IllegalStateException("unexpected failure")))
+                .isEqualTo(MailDispatcher.Failure.PERMANENT);
+    }
+
+    private void awaitCounter(String result, double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("biblioteca.mail.messages").tag("result", result).functionCounter().count() < expected
+                && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertThat(meterRegistry.get("biblioteca.mail.messages").tag("result", result).functionCounter().count())
+                .isGreaterThanOrEqualTo(expected);
+    }
+
+    private SimpleMailMessage createMessage(String to) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("administration@library-api.com");
+        message.setSubject("Livro com empréstimo atrasado");
+        message.setText("Atrasado");
+        message.setTo(to);
+        return message;
+    }
+
+    private String recipient(MimeMessage message) {
+        try {
+            return message.getAllRecipients()[0].toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
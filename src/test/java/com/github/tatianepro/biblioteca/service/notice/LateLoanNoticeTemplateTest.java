@@ -0,0 +1,80 @@
+package com.github.tatianepro.biblioteca.service.notice;
+
+import com.github.tatianepro.biblioteca.api.dto.LateLoanDto;
+import com.github.tatianepro.biblioteca.model.entity.EmailOutbox;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LateLoanNoticeTemplateTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2021, 6, 20);
+
+    @Test
+    @DisplayName("Deve listar os títulos e os dias de atraso de cada empréstimo do cliente.")
+    public void renderTest() {
+        //cenario
+        LateLoanNoticeTemplate template = new LateLoanNoticeTemplate(
+                "Olá, {customer}! {count} atrasado(s):\n{loans}Fim.", "- {title}: {days} dia(s)\n", 20);
+
+        //execucao
+        String message = template.render("Fulano", Arrays.asList(
+                LateLoanDto.builder().bookTitle("Livro A").dueDate(TODAY.minusDays(3)).build(),
+                LateLoanDto.builder().bookTitle("Livro B").loanDate(TODAY.minusDays(10)).build()), 2, TODAY);
+
+        //verificacao
+        assertThat(message).isEqualTo("Olá, Fulano! 2 atrasado(s):\n- Livro A: 3 dia(s)\n- Livro B: 10 dia(s)\nFim.");
+    }
+
+    @Test
+    @DisplayName("Deve listar no máximo max-items empréstimos, mas contar todos.")
+    public void renderMaxItemsTest() {
+        //cenario
+        LateLoanNoticeTemplate template = new LateLoanNoticeTemplate("{count}:{loans}", "{title},", 1);
+
+        //execucao
+        String message = template.render("Fulano", Arrays.asList(
+                LateLoanDto.builder().bookTitle("Livro A").build(),
+                LateLoanDto.builder().bookTitle("Livro B").build()), 5, TODAY);
+
+        //verificacao
+        assertThat(message).isEqualTo("5:Livro A,");
+    }
+
+    @Test
+    @DisplayName("Deve caber na coluna da outbox mesmo com títulos longos, cortando os títulos e a lista.")
+    public void renderLongTitlesTest() {
+        //cenario
+        LateLoanNoticeTemplate template = new LateLoanNoticeTemplate(
+                "Olá, {customer}! Você tem {count} empréstimo(s) atrasado(s):\n{loans}Favor devolver o(s) livro(s).",
+                "- {title}: {days} dia(s) de atraso\n", 200);
+        String longTitle = String.join("", Collections.nCopies(255, "a"));
+        List<LateLoanDto> loans = Collections.nCopies(200,
+                LateLoanDto.builder().bookTitle(longTitle).dueDate(TODAY.minusDays(3)).build());
+
+        //execucao
+        String message = template.render("Fulano", loans, 200, TODAY);
+
+        //verificacao
+        assertThat(message.length()).isLessThanOrEqualTo(EmailOutbox.MAX_MESSAGE_LENGTH);
+        assertThat(message).startsWith("Olá, Fulano! Você tem 200 empréstimo(s) atrasado(s):\n- aaa")
+                .endsWith("3 dia(s) de atraso\nFavor devolver o(s) livro(s).")
+                .doesNotContain(longTitle)
+                .contains(longTitle.substring(0, LateLoanNoticeTemplate.MAX_TITLE_LENGTH - 3) + "...: 3 dia(s)");
+    }
+
+    @Test
+    @DisplayName("Deve recusar o template com marcador desconhecido.")
+    public void unknownPlaceholderTest() {
+        assertThatThrownBy(() -> new LateLoanNoticeTemplate("{customer} {title}", "{title}", 20))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("{title}");
+    }
+}
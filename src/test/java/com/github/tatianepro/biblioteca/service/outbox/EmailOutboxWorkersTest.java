@@ -0,0 +1,128 @@
+package com.github.tatianepro.biblioteca.service.outbox;
+
+import com.github.tatianepro.biblioteca.model.entity.EmailOutbox;
+import com.github.tatianepro.biblioteca.model.repository.EmailOutboxRepository;
+import com.github.tatianepro.biblioteca.service.EmailService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class EmailOutboxWorkersTest {
+
+    EmailOutboxWorkers outboxWorkers;
+
+    @MockBean
+    EmailOutboxRepository repository;
+
+    @MockBean
+    EmailService emailService;
+
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        EmailOutboxProperties properties = new EmailOutboxProperties();
+        properties.setWorkers(2);
+        properties.setMaxAttempts(3);
+        outboxWorkers = new EmailOutboxWorkers(repository, emailService, properties);
+        meterRegistry = new SimpleMeterRegistry();
+        outboxWorkers.bindTo(meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Deve reservar os avisos da partição, enviar pelo EmailService e marcá-los como enviados.")
+    public void processBatchTest() throws Exception {
+        //cenario
+        List<EmailOutbox> claimed = Arrays.asList(createNotice(2L, "a@email.com", 0), createNotice(4L, "b@email.com", 0));
+        mockClaim(claimed);
+        Mockito.when(emailService.sendMails("Atrasado", Arrays.asList("a@email.com", "b@email.com")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        //execucao
+        int processed = outboxWorkers.processBatch(0);
+
+        //verificacao
+        assertThat(processed).isEqualTo(2);
+        Mockito.verify(repository).findClaimableIds(ArgumentMatchers.eq(EmailOutbox.Status.PENDING),
+                ArgumentMatchers.any(LocalDateTime.class), ArgumentMatchers.eq(0), ArgumentMatchers.eq(2),
+                ArgumentMatchers.any(Pageable.class));
+        Mockito.verify(repository).markSent(ArgumentMatchers.eq(Arrays.asList(2L, 4L)), ArgumentMatchers.anyString(),
+                ArgumentMatchers.eq(EmailOutbox.Status.SENT), ArgumentMatchers.any(LocalDateTime.class));
+        Mockito.verify(repository, Mockito.never()).release(ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any());
+        assertThat(meterRegistry.get("biblioteca.mail.outbox.emails").tag("result", "sent").functionCounter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve devolver para pendente os avisos não enviados, e marcar como falha os que esgotaram as tentativas.")
+    public void releaseFailedBatchTest() throws Exception {
+        //cenario
+        List<EmailOutbox> claimed = Arrays.asList(createNotice(2L, "a@email.com", 0), createNotice(4L, "b@email.com", 2));
+        mockClaim(claimed);
+        CompletableFuture<Void> dropped = new CompletableFuture<>();
+        dropped.completeExceptionally(new IllegalStateException("smtp fora do ar"));
+        Mockito.when(emailService.sendMails(ArgumentMatchers.anyString(), ArgumentMatchers.anyList())).thenReturn(dropped);
+
+        //execucao
+        outboxWorkers.processBatch(0);
+
+        //verificacao
+        Mockito.verify(repository, Mockito.never()).markSent(ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any());
+        Mockito.verify(repository).release(ArgumentMatchers.eq(Collections.singletonList(2L)), ArgumentMatchers.anyString(),
+                ArgumentMatchers.eq(EmailOutbox.Status.PENDING), ArgumentMatchers.any(LocalDateTime.class));
+        Mockito.verify(repository).release(ArgumentMatchers.eq(Collections.singletonList(4L)), ArgumentMatchers.anyString(),
+                ArgumentMatchers.eq(EmailOutbox.Status.FAILED), ArgumentMatchers.any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Não deve enviar nada quando outro worker já reservou os avisos.")
+    public void claimedByAnotherWorkerTest() throws Exception {
+        //cenario
+        Mockito.when(repository.findClaimableIds(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(),
+                ArgumentMatchers.anyInt(), ArgumentMatchers.any())).thenReturn(Arrays.asList(2L, 4L));
+        Mockito.when(repository.claim(ArgumentMatchers.any(), ArgumentMatchers.anyString(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(0);
+
+        //execucao
+        int processed = outboxWorkers.processBatch(0);
+
+        //verificacao
+        assertThat(processed).isZero();
+        Mockito.verifyNoInteractions(emailService);
+    }
+
+    private void mockClaim(List<EmailOutbox> claimed) {
+        Mockito.when(repository.findClaimableIds(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(),
+                ArgumentMatchers.anyInt(), ArgumentMatchers.any())).thenReturn(Arrays.asList(2L, 4L));
+        Mockito.when(repository.claim(ArgumentMatchers.any(), ArgumentMatchers.anyString(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(claimed.size());
+        Mockito.when(repository.findByClaimedByAndStatus(ArgumentMatchers.anyString(), ArgumentMatchers.eq(EmailOutbox.Status.PROCESSING)))
+                .thenReturn(claimed);
+    }
+
+    private EmailOutbox createNotice(Long id, String recipient, int attempts) {
+        return EmailOutbox.builder().id(id).recipient(recipient).message("Atrasado")
+                .status(EmailOutbox.Status.PROCESSING).attempts(attempts).build();
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.tatianepro.biblioteca.service.search;
+
+import com.github.tatianepro.biblioteca.model.entity.Books;
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookSearchIndexTest {
+
+    BookSearchIndex searchIndex;
+
+    @MockBean
+    BookRepository bookRepository;
+
+    @BeforeEach
+    public void setUp() {
+        this.searchIndex = new BookSearchIndex(bookRepository, 60000);
+        Mockito.when(bookRepository.findAll()).thenReturn(Arrays.asList(
+                createBook(1L, "As aventuras de Pi", "Yann Martel", "9781234567897"),
+                createBook(2L, "Aventuras na floresta", "Artur", "9781234567898"),
+                createBook(3L, "O cortiço", "Aluísio Azevedo", "9781234567899")
+        ));
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros por prefixo de palavras do título, ignorando maiúsculas.")
+    public void findByTitleTokensTest() {
+        //execucao
+        Page<Books> result = searchIndex.find(Books.builder().title("AVENT").build(), PageRequest.of(0, 10));
+
+        //verificacao
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(result.getContent()).extracting(Books::getId).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("Deve encontrar trechos no meio das palavras, como o CONTAINING do banco.")
+    public void findByMiddleOfWordFragmentTest() {
+        //execucao
+        Page<Books> byTitle = searchIndex.find(Books.builder().title("s avENTur").build(), PageRequest.of(0, 10));
+        Page<Books> byIsbn = searchIndex.find(Books.builder().isbn("4567899").build(), PageRequest.of(0, 10));
+        Page<Books> shortFragment = searchIndex.find(Books.builder().title("ço").build(), PageRequest.of(0, 10));
+
+        //verificacao
+        assertThat(byTitle.getContent()).extracting(Books::getId).containsExactly(1L);
+        assertThat(byIsbn.getContent()).extracting(Books::getId).containsExactly(3L);
+        assertThat(shortFragment.getContent()).extracting(Books::getId).containsExactly(3L);
+    }
+
+    @Test
+    @DisplayName("Deve intersectar título e autor e manter a semântica de contains.")
+    public void findByTitleAndAuthorTest() {
+        //execucao
+        Page<Books> result = searchIndex.find(Books.builder().title("aventuras").author("artur").build(), PageRequest.of(0, 10));
+        Page<Books> notContained = searchIndex.find(Books.builder().title("pi aventuras").build(), PageRequest.of(0, 10));
+
+        //verificacao
+        assertThat(result.getContent()).extracting(Books::getId).containsExactly(2L);
+        assertThat(notContained.getContent()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve ordenar palavras exatas antes de prefixos ou pela ordenação pedida.")
+    public void rankAndSortTest() {
+        //cenario
+        searchIndex.find(Books.builder().build(), PageRequest.of(0, 10));
+        searchIndex.index(createBook(4L, "Aventura", "Artur", "9781234567800"));
+
+        //execucao
+        Page<Books> ranked = searchIndex.find(Books.builder().title("aventura").build(), PageRequest.of(0, 10));
+        Page<Books> sorted = searchIndex.find(Books.builder().author("artur").build(),
+                PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "title")));
+
+        //verificacao
+        assertThat(ranked.getContent()).extracting(Books::getId).containsExactly(4L, 1L, 2L);
+        assertThat(sorted.getContent()).extracting(Books::getId).containsExactly(2L, 4L);
+    }
+
+    @Test
+    @DisplayName("Deve refletir atualizações e remoções sem voltar ao banco de dados.")
+    public void keepIndexUpToDateTest() {
+        //cenario
+        searchIndex.find(Books.builder().build(), PageRequest.of(0, 10));
+
+        //execucao
+        searchIndex.index(createBook(3L, "O primo Basílio", "Eça de Queirós", "9781234567899"));
+        searchIndex.remove(1L);
+        Page<Books> all = searchIndex.find(Books.builder().build(), PageRequest.of(0, 10));
+        Page<Books> renamed = searchIndex.find(Books.builder().title("basílio").build(), PageRequest.of(0, 10));
+
+        //verificacao
+        assertThat(all.getContent()).extracting(Books::getId).containsExactly(2L, 3L);
+        assertThat(renamed.getContent()).extracting(Books::getTitle).containsExactly("O primo Basílio");
+        Mockito.verify(bookRepository, Mockito.times(1)).findAll();
+    }
+
+    @Test
+    @DisplayName("Deve incluir os livros gravados por outra instância na próxima atualização.")
+    public void refreshUpdatedBooksTest() {
+        //cenario
+        searchIndex.find(Books.builder().build(), PageRequest.of(0, 10));
+        Books renamed = createBook(2L, "Aventuras no deserto", "Artur", "9781234567898");
+        renamed.setVersion(1L);
+        Mockito.when(bookRepository.findUpdatedSince(Mockito.any())).thenReturn(Arrays.asList(
+                createBook(4L, "Memórias póstumas", "Machado de Assis", "9781234567800"), renamed));
+        Mockito.when(bookRepository.count()).thenReturn(4L);
+
+        //execucao
+        searchIndex.refresh();
+        Page<Books> all = searchIndex.find(Books.builder().build(), PageRequest.of(0, 10));
+        Page<Books> byTitle = searchIndex.find(Books.builder().title("deserto").build(), PageRequest.of(0, 10));
+
+        //verificacao
+        assertThat(all.getContent()).extracting(Books::getId).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(byTitle.getContent()).extracting(Books::getId).containsExactly(2L);
+        Mockito.verify(bookRepository, Mockito.never()).findAllIds();
+    }
+
+    @Test
+    @DisplayName("Deve remover os livros apagados por outra instância e manter a versão mais nova.")
+    public void refreshDeletedAndStaleBooksTest() {
+        //cenario
+        searchIndex.find(Books.builder().build(), PageRequest.of(0, 10));
+        Books updated = createBook(2L, "Aventuras no deserto", "Artur", "9781234567898");
+        updated.setVersion(2L);
+        searchIndex.index(updated);
+        Books stale = createBook(2L, "Aventuras na floresta", "Artur", "9781234567898");
+        stale.setVersion(1L);
+        Mockito.when(bookRepository.findUpdatedSince(Mockito.any())).thenReturn(Collections.singletonList(stale));
+        Mockito.when(bookRepository.count()).thenReturn(2L);
+        Mockito.when(bookRepository.findAllIds()).thenReturn(Arrays.asList(1L, 2L));
+
+        //execucao
+        searchIndex.refresh();
+        Page<Books> all = searchIndex.find(Books.builder().build(), PageRequest.of(0, 10));
+
+        //verificacao
+        assertThat(all.getContent()).extracting(Books::getId).containsExactly(1L, 2L);
+        assertThat(all.getContent()).extracting(Books::getTitle).contains("Aventuras no deserto");
+        assertThat(all.getContent()).extracting(Books::getVersion).containsExactly(null, 2L);
+    }
+
+    @Test
+    @DisplayName("Deve paginar o resultado em memória.")
+    public void pageResultTest() {
+        //execucao
+        Page<Books> result = searchIndex.find(Books.builder().build(), PageRequest.of(1, 2));
+
+        //verificacao
+        assertThat(result.getTotalElements()).isEqualTo(3);
+        assertThat(result.getContent()).extracting(Books::getId).containsExactly(3L);
+    }
+
+    private Books createBook(Long id, String title, String author, String isbn) {
+        return Books.builder().id(id).title(title).author(author).isbn(isbn).build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.tatianepro.biblioteca.service.search;
+
+import com.github.tatianepro.biblioteca.model.repository.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IsbnBloomFilterTest {
+
+    BookRepository bookRepository;
+    IsbnBloomFilter isbnFilter;
+
+    @BeforeEach
+    public void setUp() {
+        bookRepository = Mockito.mock(BookRepository.class);
+        isbnFilter = new IsbnBloomFilter(bookRepository, 1000, 0.01);
+    }
+
+    @Test
+    @DisplayName("Deve consultar o banco enquanto o filtro não foi carregado.")
+    public void notReadyFallsBackTest() {
+        //cenario
+        Predicate<String> database = Mockito.mock(Predicate.class);
+
+        //execucao
+        boolean registered = isbnFilter.contains("001", database);
+
+        //verificacao
+        assertThat(registered).isFalse();
+        Mockito.verify(database).test("001");
+    }
+
+    @Test
+    @DisplayName("Deve responder sem consultar o banco para isbns certamente novos.")
+    public void definiteNegativeTest() {
+        //cenario
+        Mockito.when(bookRepository.streamAllIsbns()).thenReturn(Stream.of("001", "002"));
+        isbnFilter.rebuild();
+        Predicate<String> database = Mockito.mock(Predicate.class);
+        Mockito.when(database.test(Mockito.anyString())).thenReturn(true);
+
+        //execucao
+        boolean registered = isbnFilter.contains("001", database);
+        boolean absent = isbnFilter.mightContain("003");
+
+        //verificacao
+        assertThat(registered).isTrue();
+        assertThat(absent).isFalse();
+        Mockito.verify(database).test("001");
+        Mockito.verifyNoMoreInteractions(database);
+    }
+
+    @Test
+    @DisplayName("Deve refletir livros adicionados e removidos após a carga.")
+    public void addAndRemoveTest() {
+        //cenario
+        Mockito.when(bookRepository.streamAllIsbns()).thenReturn(Stream.empty());
+        isbnFilter.rebuild();
+
+        //execucao
+        isbnFilter.add("001");
+        boolean afterAdd = isbnFilter.mightContain("001");
+        isbnFilter.remove("001");
+        boolean afterRemove = isbnFilter.mightContain("001");
+
+        //verificacao
+        assertThat(afterAdd).isTrue();
+        assertThat(afterRemove).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve recomeçar do zero a cada carga, sem contar duas vezes os ISBNs já carregados.")
+    public void rebuildResetsCountersTest() {
+        //cenario
+        Mockito.when(bookRepository.streamAllIsbns())
+                .thenReturn(Stream.of("001", "002"))
+                .thenReturn(Stream.of("001"));
+        isbnFilter.rebuild();
+
+        //execucao
+        isbnFilter.rebuild();
+        isbnFilter.remove("001");
+
+        //verificacao
+        assertThat(isbnFilter.mightContain("001")).isFalse();
+        assertThat(isbnFilter.mightContain("002")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve manter a taxa de falsos positivos perto da configurada e expô-la como métrica.")
+    public void falsePositiveRateTest() {
+        //cenario
+        Mockito.when(bookRepository.streamAllIsbns())
+                .thenReturn(IntStream.range(0, 1000).mapToObj(i -> "978" + i));
+        isbnFilter.rebuild();
+        MeterRegistry registry = new SimpleMeterRegistry();
+        isbnFilter.bindTo(registry);
+
+        //execucao
+        IntStream.range(0, 10000).forEach(i -> isbnFilter.contains("979" + i, isbn -> false));
+
+        //verificacao
+        IntStream.range(0, 1000).forEach(i -> assertThat(isbnFilter.mightContain("978" + i)).isTrue());
+        double rate = registry.get("biblioteca.isbn.filter.false.positive.rate").gauge().value();
+        assertThat(rate).isLessThan(0.03);
+        assertThat(registry.get("biblioteca.isbn.filter.checks").tag("result", "negative").functionCounter().count())
+                .isGreaterThan(9500);
+    }
+}